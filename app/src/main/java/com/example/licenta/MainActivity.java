@@ -1,5 +1,6 @@
 package com.example.licenta;
 
+import android.content.ComponentCallbacks2;
 import android.os.Bundle;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
@@ -11,6 +12,9 @@ import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
 
 import com.example.licenta.databinding.ActivityMainBinding;
+import com.example.licenta.utils.ArrayPool;
+import com.example.licenta.utils.ModelRegistry;
+import com.example.licenta.utils.Thumbnails;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -19,6 +23,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Start loading the classifier while the user is still on the home screen
+        ModelRegistry.getInstance(this).preload();
 
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
@@ -27,11 +33,21 @@ public class MainActivity extends AppCompatActivity {
         // Passing each menu ID as a set of Ids because each
         // menu should be considered as top level destinations.
         AppBarConfiguration appBarConfiguration = new AppBarConfiguration.Builder(
-                R.id.navigation_home, R.id.navigation_upload)
+                R.id.navigation_home, R.id.navigation_upload, R.id.navigation_history)
                 .build();
         NavController navController = Navigation.findNavController(this, R.id.nav_host_fragment_activity_main);
         NavigationUI.setupActionBarWithNavController(this, navController, appBarConfiguration);
         NavigationUI.setupWithNavController(binding.navView, navController);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ModelRegistry.getInstance(this).onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            ArrayPool.SHARED.clear();
+            Thumbnails.trimMemory();
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package com.example.licenta.ui.benchmark;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+
+import com.example.licenta.R;
+import com.example.licenta.ui.image.ImageSources;
+import com.example.licenta.utils.BackendAutotuner;
+import com.example.licenta.utils.BackendConfig;
+import com.example.licenta.utils.ModelBenchmark;
+import com.example.licenta.utils.ModelVariants;
+import com.example.licenta.utils.SampledBitmapDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BenchmarkFragment extends Fragment {
+    private static final String TAG = "BenchmarkFragment";
+    private static final int REQUEST_ADD_IMAGES = 1;
+    private static final String SAMPLE_IMAGE = "leaf.png";
+    private static final int WARM_UP_RUNS = 3;
+    private static final int MIN_TIMED_RUNS = 30;
+    // Larger than any variant's input, so each one resizes from the same pixels
+    private static final int IMAGE_SIZE = 512;
+    private TextView infoTextView;
+    private Button addImagesButton;
+    private Button runButton;
+    private ProgressBar progressBar;
+    private TextView resultsTextView;
+    // Loading, decoding and the benchmark itself all run here, one at a time
+    private ExecutorService executorService;
+    private Handler mainHandler;
+    // Only touched on the executor
+    private final List<ModelBenchmark.Image> images = new ArrayList<>();
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View root = inflater.inflate(R.layout.fragment_benchmark, container, false);
+        infoTextView = root.findViewById(R.id.benchmark_info_text_view);
+        addImagesButton = root.findViewById(R.id.button_benchmark_add_images);
+        runButton = root.findViewById(R.id.button_benchmark_run);
+        progressBar = root.findViewById(R.id.benchmark_progress_bar);
+        resultsTextView = root.findViewById(R.id.benchmark_results_text_view);
+        executorService = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+
+        final Context context = requireContext().getApplicationContext();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                images.clear();
+                try (InputStream stream = context.getAssets().open(SAMPLE_IMAGE)) {
+                    Bitmap sample = BitmapFactory.decodeStream(stream);
+                    if (sample != null) {
+                        images.add(ModelVariants.toImage(SAMPLE_IMAGE, sample));
+                        sample.recycle();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Error loading " + SAMPLE_IMAGE, e);
+                }
+                showInfo(context);
+            }
+        });
+
+        addImagesButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+                intent.setType("image/*");
+                intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+                startActivityForResult(intent, REQUEST_ADD_IMAGES);
+            }
+        });
+
+        runButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                runBenchmark();
+            }
+        });
+
+        return root;
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_ADD_IMAGES || resultCode != Activity.RESULT_OK || data == null) {
+            return;
+        }
+        final List<Uri> uris = ImageSources.fromPickerResult(data);
+        final Context context = requireContext().getApplicationContext();
+        final SampledBitmapDecoder decoder = new SampledBitmapDecoder(context.getContentResolver());
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Uri uri : uris) {
+                    try {
+                        Bitmap bitmap = decoder.decode(uri, IMAGE_SIZE);
+                        images.add(ModelVariants.toImage(uri.getLastPathSegment(), bitmap));
+                        bitmap.recycle();
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error decoding " + uri, e);
+                    }
+                }
+                showInfo(context);
+            }
+        });
+    }
+
+    // Runs on the executor
+    private void showInfo(Context context) {
+        int variantCount;
+        try {
+            variantCount = ModelVariants.find(context, BackendConfig.defaultConfig()).size();
+        } catch (IOException e) {
+            variantCount = 0;
+        }
+        final String info = variantCount + " model variants, " + images.size() + " images\n"
+                + "Extra variants go in " + ModelVariants.getModelDirectory(context);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                infoTextView.setText(info);
+            }
+        });
+    }
+
+    private void runBenchmark() {
+        addImagesButton.setEnabled(false);
+        runButton.setEnabled(false);
+        resultsTextView.setText("");
+        progressBar.setProgress(0);
+        progressBar.setVisibility(View.VISIBLE);
+        final Context context = requireContext().getApplicationContext();
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                String message = null;
+                try {
+                    // Every variant runs on the backend this device was tuned for
+                    BackendConfig tuned = BackendAutotuner.loadTuned(context);
+                    List<ModelBenchmark.Variant> variants = ModelVariants.find(context,
+                            tuned != null ? tuned : BackendConfig.defaultConfig());
+                    if (variants.isEmpty() || images.isEmpty()) {
+                        message = "Nothing to benchmark";
+                    } else {
+                        final int variantCount = variants.size();
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                progressBar.setMax(variantCount);
+                            }
+                        });
+                        final List<ModelBenchmark.Result> finished = new ArrayList<>();
+                        ModelBenchmark benchmark = new ModelBenchmark(WARM_UP_RUNS, MIN_TIMED_RUNS,
+                                ModelVariants.memoryProbe());
+                        List<ModelBenchmark.Result> results = benchmark.run(variants, images,
+                                new ModelBenchmark.Listener() {
+                                    @Override
+                                    public void onVariantFinished(ModelBenchmark.Result result, final int done, int total) {
+                                        finished.add(result);
+                                        final String summary = ModelBenchmark.summary(finished);
+                                        mainHandler.post(new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                progressBar.setProgress(done);
+                                                resultsTextView.setText(summary);
+                                            }
+                                        });
+                                    }
+                                });
+                        File file = ModelVariants.export(context, results, images.size());
+                        message = "Results saved to " + file.getAbsolutePath();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Error running the benchmark", e);
+                    message = "Error running the benchmark";
+                }
+                final String toast = message;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        addImagesButton.setEnabled(true);
+                        runButton.setEnabled(true);
+                        progressBar.setVisibility(View.GONE);
+                        Toast.makeText(context, toast, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // Interrupts a running benchmark, which stops after the current variant
+        executorService.shutdownNow();
+    }
+}
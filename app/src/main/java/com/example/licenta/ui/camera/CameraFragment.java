@@ -1,15 +1,16 @@
 package com.example.licenta.ui.camera;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
 import android.util.Size;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.CheckBox;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -17,31 +18,45 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
-import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.example.licenta.R;
-import com.example.licenta.utils.TFLiteModel;
+import com.example.licenta.utils.Classifier;
+import com.example.licenta.utils.MetricsExporter;
+import com.example.licenta.utils.ModelRegistry;
+import com.example.licenta.utils.PipelineMetrics;
+import com.example.licenta.utils.PowerPolicy;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.nio.ByteBuffer;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class CameraFragment extends Fragment {
     private static final int REQUEST_CAMERA_PERMISSION = 200;
+    private static final long METRICS_REFRESH_MS = 500;
+    // shownLabelIndex before the first result; Frame.NO_LEAF is a result too
+    private static final int NOTHING_SHOWN = -2;
     private PreviewView viewFinder;
     private TextView resultTextView;
     private TextView accuracyTextView;
-    private TFLiteModel tfliteModel;
-    private ExecutorService cameraExecutor;
+    private TextView metricsTextView;
+    private TextView powerModeTextView;
+    private ProcessCameraProvider cameraProvider;
+    // The mode whose preview size the camera is bound with
+    private PowerPolicy.Mode boundPowerMode;
+    private long lastMetricsRefresh;
+    // Owns the model, the analysis thread and its buffers across rotations
+    private CameraViewModel viewModel;
+    private int shownLabelIndex = NOTHING_SHOWN;
+    private int shownAccuracy = -1;
+    private final PipelineMetrics metrics = PipelineMetrics.CAMERA;
 
     @Nullable
     @Override
@@ -50,8 +65,55 @@ public class CameraFragment extends Fragment {
         viewFinder = root.findViewById(R.id.viewFinder); //
         resultTextView = root.findViewById(R.id.result_text_view);
         accuracyTextView = root.findViewById(R.id.accuracy_text_view);
-        tfliteModel = new TFLiteModel(requireActivity());
-        cameraExecutor = Executors.newSingleThreadExecutor();
+        metricsTextView = root.findViewById(R.id.metrics_text_view);
+        powerModeTextView = root.findViewById(R.id.power_mode_text_view);
+        cameraProvider = null;
+        boundPowerMode = null;
+        shownLabelIndex = NOTHING_SHOWN;
+        shownAccuracy = -1;
+        // Tapping the status line toggles the per-stage timing overlay; long-pressing the
+        // overlay exports the numbers to a file
+        root.findViewById(R.id.analyzing_text_view).setOnClickListener(v -> {
+            boolean show = metricsTextView.getVisibility() != View.VISIBLE;
+            metricsTextView.setText(metrics.summary());
+            metricsTextView.setVisibility(show ? View.VISIBLE : View.GONE);
+        });
+        metricsTextView.setOnLongClickListener(v -> {
+            exportMetrics();
+            return true;
+        });
+        viewModel = new ViewModelProvider(this).get(CameraViewModel.class);
+        CheckBox leafGateCheckBox = root.findViewById(R.id.leaf_gate_checkbox);
+        leafGateCheckBox.setChecked(viewModel.isGateEnabled());
+        leafGateCheckBox.setOnCheckedChangeListener((button, checked) -> viewModel.setGateEnabled(checked));
+        viewModel.getResult().observe(getViewLifecycleOwner(), frame -> {
+            if (frame.labelIndex == CameraViewModel.Frame.NO_LEAF) {
+                displayNoLeaf();
+            } else {
+                displayResult(frame.model, frame.labelIndex, frame.scores[frame.labelIndex] * 100);
+            }
+            viewModel.onDelivered(frame);
+            refreshMetrics();
+        });
+        viewModel.getPowerMode().observe(getViewLifecycleOwner(), mode -> {
+            String reason = viewModel.getPowerReason();
+            powerModeTextView.setText("Power mode: " + mode.label + (reason.isEmpty() ? "" : " (" + reason + ")"));
+            // Only a different preview size needs the camera to be bound again
+            if (cameraProvider != null && boundPowerMode != null
+                    && (mode.previewWidth != boundPowerMode.previewWidth || mode.previewHeight != boundPowerMode.previewHeight)) {
+                bindPreview(cameraProvider);
+            }
+        });
+        viewModel.getModelHandle().whenReady(new ModelRegistry.Listener() {
+            @Override
+            public void onModelReady(Classifier model) {
+            }
+
+            @Override
+            public void onModelError(Exception error) {
+                Toast.makeText(getActivity(), "Error loading the model", Toast.LENGTH_SHORT).show();
+            }
+        });
         if (allPermissionsGranted()) {
             startCamera();
         } else {
@@ -82,7 +144,7 @@ public class CameraFragment extends Fragment {
 
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                cameraProvider = cameraProviderFuture.get();
                 bindPreview(cameraProvider);
             } catch (ExecutionException | InterruptedException e) {
                 // Handle any errors (including cancellation) here.
@@ -93,8 +155,13 @@ public class CameraFragment extends Fragment {
 
     private void bindPreview(@NonNull ProcessCameraProvider cameraProvider) {
 
-        Preview preview = new Preview.Builder()
-                .build();
+        PowerPolicy.Mode mode = viewModel.getPowerMode().getValue();
+        boundPowerMode = mode != null ? mode : PowerPolicy.Mode.FULL;
+        Preview.Builder previewBuilder = new Preview.Builder();
+        if (boundPowerMode.previewWidth > 0) {
+            previewBuilder.setTargetResolution(new Size(boundPowerMode.previewWidth, boundPowerMode.previewHeight));
+        }
+        Preview preview = previewBuilder.build();
 
         CameraSelector cameraSelector = new CameraSelector.Builder()
                 .requireLensFacing(CameraSelector.LENS_FACING_BACK)
@@ -103,80 +170,66 @@ public class CameraFragment extends Fragment {
         ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
                 .setTargetResolution(new Size(224, 224))
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
                 .build();
 
-        imageAnalysis.setAnalyzer(cameraExecutor, image -> {
-            Bitmap bitmap = imageProxyToBitmap(image);
-            if (bitmap != null) {
-                runPrediction(bitmap);
-            }
-            image.close();
-        });
+        imageAnalysis.setAnalyzer(viewModel.getExecutor(), viewModel::analyze);
 
         cameraProvider.unbindAll();
-        cameraProvider.bindToLifecycle((LifecycleOwner) this, cameraSelector, imageAnalysis, preview);
+        cameraProvider.bindToLifecycle(getViewLifecycleOwner(), cameraSelector, imageAnalysis, preview);
 
         preview.setSurfaceProvider(viewFinder.getSurfaceProvider());
     }
 
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        ImageProxy.PlaneProxy[] planes = image.getPlanes();
-        ByteBuffer buffer = planes[0].getBuffer();
-        byte[] bytes = new byte[buffer.remaining()];
-        buffer.get(bytes);
-        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-        if (bitmap != null) {
-            bitmap = rotateBitmap(bitmap, image.getImageInfo().getRotationDegrees());
+    private void refreshMetrics() {
+        long uptime = SystemClock.uptimeMillis();
+        if (metricsTextView.getVisibility() == View.VISIBLE && uptime - lastMetricsRefresh >= METRICS_REFRESH_MS) {
+            lastMetricsRefresh = uptime;
+            metricsTextView.setText(metrics.summary());
         }
-        return bitmap;
-    }
-
-    private Bitmap rotateBitmap(Bitmap bitmap, int rotationDegrees) {
-        Matrix matrix = new Matrix();
-        matrix.postRotate(rotationDegrees);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
     }
 
-    private void runPrediction(Bitmap bitmap) {
-        float[] input = preprocessImage(bitmap);
-        TFLiteModel.PredictionResult result = tfliteModel.predict(input);
-
-        getActivity().runOnUiThread(() -> {
-            displayResult(result.label, result.accuracy, result.latency);
+    private void exportMetrics() {
+        Classifier model = viewModel.getModelHandle().getModel();
+        final Context context = requireContext().getApplicationContext();
+        final String backend = model != null ? model.getDescription() : "not loaded";
+        viewModel.getExecutor().execute(() -> {
+            String message;
+            try {
+                File file = MetricsExporter.export(context, backend);
+                message = "Metrics saved to " + file.getAbsolutePath();
+            } catch (IOException e) {
+                Log.e("CameraFragment", "Error exporting metrics", e);
+                message = "Error exporting metrics";
+            }
+            final String toast = message;
+            viewFinder.post(() -> Toast.makeText(context, toast, Toast.LENGTH_LONG).show());
         });
     }
 
-    private float[] preprocessImage(Bitmap bitmap) {
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, TFLiteModel.IMG_SIZE, TFLiteModel.IMG_SIZE, true);
-
-        int width = resizedBitmap.getWidth();
-        int height = resizedBitmap.getHeight();
-        int[] pixels = new int[width * height];
-        resizedBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-
-        float[] input = new float[width * height * 3];
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-            input[i * 3] = ((pixel >> 16) & 0xFF) / 255.0f; // Red
-            input[i * 3 + 1] = ((pixel >> 8) & 0xFF) / 255.0f; // Green
-            input[i * 3 + 2] = (pixel & 0xFF) / 255.0f; // Blue
+    private void displayNoLeaf() {
+        if (shownLabelIndex != CameraViewModel.Frame.NO_LEAF) {
+            shownLabelIndex = CameraViewModel.Frame.NO_LEAF;
+            shownAccuracy = -1;
+            resultTextView.setText("No cassava leaf in view");
+            resultTextView.setVisibility(View.VISIBLE);
+            accuracyTextView.setVisibility(View.GONE);
         }
-
-        return input;
     }
 
-    private void displayResult(String label, float accuracy, long latency) {
-        resultTextView.setText("Prediction: " + label);
-        resultTextView.setVisibility(View.VISIBLE);
-
-        accuracyTextView.setText(String.format("Accuracy: %.2f%%", accuracy));
-        accuracyTextView.setVisibility(View.VISIBLE);
-    }
+    // Texts are only rebuilt when what they show changes, so a steady prediction allocates nothing
+    private void displayResult(Classifier model, int labelIndex, float accuracy) {
+        if (labelIndex != shownLabelIndex) {
+            shownLabelIndex = labelIndex;
+            resultTextView.setText("Prediction: " + model.getLabel(labelIndex));
+            resultTextView.setVisibility(View.VISIBLE);
+        }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        tfliteModel.close();
-        cameraExecutor.shutdown();
+        int hundredths = Math.round(accuracy * 100);
+        if (hundredths != shownAccuracy) {
+            shownAccuracy = hundredths;
+            accuracyTextView.setText(String.format("Accuracy: %.2f%%", accuracy));
+            accuracyTextView.setVisibility(View.VISIBLE);
+        }
     }
 }
@@ -0,0 +1,372 @@
+package com.example.licenta.ui.camera;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageProxy;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.licenta.utils.Classifier;
+import com.example.licenta.utils.Conflator;
+import com.example.licenta.utils.FrameScheduler;
+import com.example.licenta.utils.LeafGate;
+import com.example.licenta.utils.ModelRegistry;
+import com.example.licenta.utils.PipelineMetrics;
+import com.example.licenta.utils.PowerMonitor;
+import com.example.licenta.utils.PowerPolicy;
+import com.example.licenta.utils.PredictionResult;
+import com.example.licenta.utils.ScanHistory;
+import com.example.licenta.utils.ScanHistoryStore;
+import com.example.licenta.utils.SceneChangeDetector;
+import com.example.licenta.utils.TFLiteModel;
+import com.example.licenta.utils.YuvToTensorConverter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The camera's inference session: the model reference, the analysis thread and every buffer it
+ * reuses. It belongs to the ViewModel, so a rotation only rebinds the camera to the new view.
+ * Results go through a {@link Conflator} to {@link #getResult()}, which is updated at most
+ * once per display frame with the newest classified frame; frames the UI had no time to show
+ * are dropped on the way instead of queueing up on the main thread.
+ * <p>
+ * When the leaf gate is on, a frame must pass {@link LeafGate} before it is classified; frames
+ * of soil, sky or hands are reported as {@link Frame#NO_LEAF} for a fraction of the cost.
+ * <p>
+ * A {@link PowerMonitor} lowers the inference rate and interpreter threads as the phone heats
+ * up or its battery runs low, and raises them again once it recovers; the fragment applies
+ * the mode's preview size.
+ */
+public class CameraViewModel extends AndroidViewModel {
+    // Inference may use at most half of the wall-clock time, at the rate the power mode allows
+    private static final float INFERENCE_DUTY_CYCLE = 0.5f;
+    // A still scene is re-classified at least this often
+    private static final long MAX_RESULT_AGE_MS = 2000;
+    private static final int SCENE_GRID_SIZE = 16;
+    private static final int SCENE_CHANGE_THRESHOLD = 8;
+    // One frame being filled, one waiting for the next vsync and one held by the LiveData
+    private static final int FRAME_SLOTS = 3;
+    // At least a fifth of a 24x24 grid over the center square has to look like leaf
+    private static final int GATE_GRID_SIZE = 24;
+    private static final int GATE_MIN_GREENNESS = 12;
+    private static final float GATE_MIN_LEAF_FRACTION = 0.2f;
+    private static final String PREFS_NAME = "camera";
+    private static final String KEY_LEAF_GATE = "leaf_gate";
+
+    private final ModelRegistry.Handle modelHandle;
+    private final ExecutorService cameraExecutor = Executors.newSingleThreadExecutor();
+    private final ScanHistory history;
+    private final PipelineMetrics metrics = PipelineMetrics.CAMERA;
+    private final FrameScheduler frameScheduler = new FrameScheduler(INFERENCE_DUTY_CYCLE, PowerPolicy.Mode.FULL.maxFps, MAX_RESULT_AGE_MS);
+    private final SceneChangeDetector sceneChangeDetector = new SceneChangeDetector(SCENE_GRID_SIZE, SCENE_CHANGE_THRESHOLD);
+    private final LeafGate leafGate = new LeafGate(GATE_GRID_SIZE, GATE_MIN_GREENNESS, GATE_MIN_LEAF_FRACTION);
+    private final SharedPreferences prefs;
+    private volatile boolean gateEnabled;
+    // The setting the camera thread last ran with; a change re-classifies the current scene
+    private boolean gateWasEnabled;
+    private final PowerMonitor powerMonitor;
+    private final MutableLiveData<PowerPolicy.Mode> powerMode = new MutableLiveData<>();
+    private String powerReason = "";
+    private volatile int maxThreads;
+    // Copy of the shared model with fewer threads, used while the power mode asks for it
+    private TFLiteModel throttledModel;
+    private TFLiteModel throttledSource;
+    // Recycled result holders; a frame is skipped when none is free
+    private final ArrayBlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(FRAME_SLOTS);
+    private final MutableLiveData<Frame> result = new MutableLiveData<>();
+    private final Conflator<Frame> conflator;
+    private YuvToTensorConverter yuvConverter;
+    private ByteBuffer inputBuffer;
+    // Only a change of prediction is recorded, not every frame of a steady one
+    private int recordedLabelIndex = -1;
+    private int[] thumbnailPixels;
+
+    // One classified frame; owned by the session, so observers must not keep it
+    public static final class Frame {
+        // labelIndex of a frame the leaf gate rejected; its scores are not set
+        public static final int NO_LEAF = -1;
+        public final float[] scores;
+        public Classifier model;
+        public int labelIndex;
+        long startTime;
+        long postTime;
+        boolean delivered;
+
+        Frame(int numClasses) {
+            scores = new float[numClasses];
+        }
+    }
+
+    public CameraViewModel(@NonNull Application application) {
+        super(application);
+        modelHandle = ModelRegistry.getInstance(application).acquire();
+        history = ScanHistory.getInstance(application);
+        // The overlay and exported numbers describe this camera session only
+        metrics.reset();
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        gateEnabled = prefs.getBoolean(KEY_LEAF_GATE, true);
+        powerMonitor = new PowerMonitor(application, new PowerMonitor.Listener() {
+            @Override
+            public void onPowerModeChanged(PowerPolicy.Mode mode, String reason) {
+                frameScheduler.setMaxFps(mode.maxFps);
+                maxThreads = mode.maxThreads;
+                powerReason = reason;
+                powerMode.setValue(mode);
+            }
+        });
+        powerMonitor.start();
+        conflator = new Conflator<>(new VsyncExecutor(), new Conflator.Consumer<Frame>() {
+            @Override
+            public void accept(Frame frame) {
+                publish(frame);
+            }
+        }, new Conflator.Recycler<Frame>() {
+            @Override
+            public void recycle(Frame frame) {
+                release(frame);
+            }
+        });
+    }
+
+    public ModelRegistry.Handle getModelHandle() {
+        return modelHandle;
+    }
+
+    // The analysis thread, also free for short jobs such as exporting metrics
+    public Executor getExecutor() {
+        return cameraExecutor;
+    }
+
+    public boolean isGateEnabled() {
+        return gateEnabled;
+    }
+
+    public void setGateEnabled(boolean enabled) {
+        gateEnabled = enabled;
+        prefs.edit().putBoolean(KEY_LEAF_GATE, enabled).apply();
+    }
+
+    public LiveData<PowerPolicy.Mode> getPowerMode() {
+        return powerMode;
+    }
+
+    // Why the power mode is below full, or ""; read on the main thread
+    public String getPowerReason() {
+        return powerReason;
+    }
+
+    public LiveData<Frame> getResult() {
+        return result;
+    }
+
+    // Frames the display had no time to show
+    public long getConflatedFrames() {
+        return conflator.getConflated();
+    }
+
+    // Runs on the camera executor; the converter and input buffer are only touched there.
+    // Once the buffers exist nothing here allocates, so steady frames cause no GC pauses.
+    public void analyze(ImageProxy image) {
+        // Frames are dropped until the shared model has finished loading
+        Classifier model = throttle(modelHandle.getModel());
+        if (model != null) {
+            runPrediction(model, image);
+        }
+        image.close();
+    }
+
+    // Runs the shared model with the power mode's thread limit. The copy shares the mapped
+    // model and is only rebuilt when the limit or the shared model changes.
+    private Classifier throttle(Classifier model) {
+        int limit = maxThreads;
+        if (!(model instanceof TFLiteModel) || limit == 0
+                || ((TFLiteModel) model).getBackendConfig().numThreads <= limit) {
+            closeThrottledModel();
+            return model;
+        }
+        TFLiteModel shared = (TFLiteModel) model;
+        if (throttledSource != shared || throttledModel.getBackendConfig().numThreads != limit) {
+            closeThrottledModel();
+            throttledModel = shared.copy(shared.getBackendConfig().withThreads(limit));
+            throttledSource = shared;
+        }
+        return throttledModel;
+    }
+
+    private void closeThrottledModel() {
+        if (throttledModel != null) {
+            throttledModel.close();
+            throttledModel = null;
+            throttledSource = null;
+        }
+    }
+
+    private void runPrediction(Classifier model, ImageProxy image) {
+        // Skip frames that arrive before the latency budget allows another inference, and
+        // frames showing the same scene as the last result, which then stays on screen
+        long now = System.nanoTime();
+        if (!frameScheduler.isDue(now)) {
+            return;
+        }
+        boolean gate = gateEnabled;
+        if (gate != gateWasEnabled) {
+            gateWasEnabled = gate;
+            sceneChangeDetector.reset();
+        }
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        boolean changed = sceneChangeDetector.hasChanged(planes[0].getBuffer(),
+                image.getWidth(), image.getHeight(), planes[0].getRowStride());
+        if (!changed && !frameScheduler.isStale(now)) {
+            return;
+        }
+
+        if (inputBuffer == null) {
+            inputBuffer = model.newInputBuffer();
+            yuvConverter = new YuvToTensorConverter(model.newPreprocessor());
+            for (int i = 0; i < FRAME_SLOTS; i++) {
+                freeFrames.add(new Frame(model.getNumClasses()));
+            }
+        }
+        Frame frame = freeFrames.poll();
+        if (frame == null) {
+            return;
+        }
+        long time = System.nanoTime();
+        if (gate) {
+            boolean leaf = leafGate.accepts(planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                    image.getWidth(), image.getHeight(),
+                    planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride());
+            time = metrics.lap(PipelineMetrics.Stage.GATE, time);
+            metrics.onGate(leaf);
+            if (!leaf) {
+                // The scheduler sees the gate's cost, so the budget follows the average frame
+                frame.model = model;
+                frame.labelIndex = Frame.NO_LEAF;
+                frame.startTime = now;
+                frame.delivered = false;
+                frame.postTime = time;
+                sceneChangeDetector.accept();
+                frameScheduler.onInference(now, time - now);
+                // recordedLabelIndex is kept, so sweeping from a leaf to the soil and back does
+                // not record the same leaf again
+                conflator.offer(frame);
+                return;
+            }
+        }
+        yuvConverter.convert(planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                image.getWidth(), image.getHeight(),
+                planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getImageInfo().getRotationDegrees(), inputBuffer);
+        time = metrics.lap(PipelineMetrics.Stage.PREPROCESS, time);
+        model.predictInto(inputBuffer, frame.scores);
+        time = metrics.lap(PipelineMetrics.Stage.INFERENCE, time);
+        frame.model = model;
+        frame.labelIndex = PredictionResult.argMax(frame.scores, 0, frame.scores.length);
+        frame.startTime = now;
+        frame.delivered = false;
+        frame.postTime = metrics.lap(PipelineMetrics.Stage.POSTPROCESS, time);
+        sceneChangeDetector.accept();
+        frameScheduler.onInference(now, frame.postTime - now);
+        // The result copies the scores, as the frame belongs to the UI once it is offered
+        PredictionResult recorded = null;
+        if (frame.labelIndex != recordedLabelIndex) {
+            recordedLabelIndex = frame.labelIndex;
+            recorded = model.toResult(frame.scores, 0, (frame.postTime - frame.startTime) / 1_000_000);
+        }
+
+        conflator.offer(frame);
+        // Recorded after the frame is on its way, so the thumbnail does not delay the new label
+        if (recorded != null) {
+            recordScan(model, image, recorded);
+        }
+    }
+
+    // The thumbnail comes straight from the YUV planes with the same crop and rotation as the input
+    private void recordScan(Classifier model, ImageProxy image, PredictionResult result) {
+        int step = Math.max(1, model.getInputWidth() / ScanHistory.THUMBNAIL_SIZE);
+        int width = model.getInputWidth() / step;
+        int height = model.getInputHeight() / step;
+        if (thumbnailPixels == null || thumbnailPixels.length != width * height) {
+            thumbnailPixels = new int[width * height];
+        }
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        yuvConverter.convertToArgb(planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                image.getWidth(), image.getHeight(),
+                planes[0].getRowStride(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getImageInfo().getRotationDegrees(), step, thumbnailPixels);
+        Bitmap thumbnail = Bitmap.createBitmap(thumbnailPixels, width, height, Bitmap.Config.ARGB_8888);
+        history.record(result, ScanHistoryStore.SOURCE_CAMERA, null, thumbnail);
+        thumbnail.recycle();
+    }
+
+    // Runs on the main thread at a display frame. The frame the LiveData held until now goes
+    // back to the pool; observers have seen it, and a stopped view gets the newest one anyway.
+    private void publish(Frame frame) {
+        Frame previous = result.getValue();
+        result.setValue(frame);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    private void release(Frame frame) {
+        frame.model = null;
+        freeFrames.offer(frame);
+    }
+
+    // Called by the observer the first time it shows a frame, so a frame redelivered to a new
+    // view after a rotation is not counted twice
+    void onDelivered(Frame frame) {
+        if (frame.delivered) {
+            return;
+        }
+        frame.delivered = true;
+        long shown = metrics.lap(PipelineMetrics.Stage.DELIVERY, frame.postTime);
+        metrics.record(PipelineMetrics.Stage.TOTAL, shown - frame.startTime);
+        metrics.onFrame();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        powerMonitor.stop();
+        modelHandle.close();
+        cameraExecutor.execute(this::closeThrottledModel);
+        cameraExecutor.shutdown();
+    }
+
+    // Runs the delivery at the next vsync, so the UI is updated at most at the display's refresh rate
+    private static final class VsyncExecutor implements Executor, Runnable, Choreographer.FrameCallback {
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        // The conflator always hands over the same drain task, and only one at a time
+        private volatile Runnable command;
+
+        @Override
+        public void execute(Runnable command) {
+            this.command = command;
+            mainHandler.post(this);
+        }
+
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            command.run();
+        }
+    }
+}
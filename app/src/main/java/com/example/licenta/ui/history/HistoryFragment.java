@@ -0,0 +1,354 @@
+package com.example.licenta.ui.history;
+
+import android.app.Activity;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.licenta.R;
+import com.example.licenta.utils.Classifier;
+import com.example.licenta.utils.ModelRegistry;
+import com.example.licenta.utils.ScanExporter;
+import com.example.licenta.utils.ScanHistory;
+import com.example.licenta.utils.ScanHistoryStore;
+import com.example.licenta.utils.ThumbnailCache;
+import com.example.licenta.utils.Thumbnails;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class HistoryFragment extends Fragment {
+    private static final String TAG = "HistoryFragment";
+    private static final int PAGE_SIZE = 50;
+    // Pages are requested before rows this close to the screen are bound
+    private static final int PREFETCH_DISTANCE = 10;
+    // Pages further than this from the visible one are dropped, and read again if scrolled back to
+    private static final int MAX_PAGE_DISTANCE = 3;
+    private static final String[] SOURCE_NAMES = {"Camera", "Gallery", "Batch scan"};
+    private static final int REQUEST_EXPORT_CSV = 1;
+    private static final int REQUEST_EXPORT_JSON_LINES = 2;
+    private RecyclerView listView;
+    private TextView emptyTextView;
+    private Button exportCsvButton;
+    private Button exportJsonButton;
+    private LinearLayoutManager layoutManager;
+    private final HistoryAdapter adapter = new HistoryAdapter();
+    private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+    private ScanHistoryStore store;
+    private ExecutorService pageExecutor;
+    // Separate from the pages, so an export does not hold up scrolling
+    private ExecutorService exportExecutor;
+    private Handler mainHandler;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View root = inflater.inflate(R.layout.fragment_history, container, false);
+        listView = root.findViewById(R.id.history_list);
+        emptyTextView = root.findViewById(R.id.history_empty_text_view);
+        exportCsvButton = root.findViewById(R.id.button_export_csv);
+        exportJsonButton = root.findViewById(R.id.button_export_jsonl);
+        exportCsvButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                chooseExportFile(ScanExporter.Format.CSV, REQUEST_EXPORT_CSV);
+            }
+        });
+        exportJsonButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                chooseExportFile(ScanExporter.Format.JSON_LINES, REQUEST_EXPORT_JSON_LINES);
+            }
+        });
+        layoutManager = new LinearLayoutManager(requireContext());
+        listView.setLayoutManager(layoutManager);
+        listView.setHasFixedSize(true);
+        listView.setAdapter(adapter);
+        listView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                adapter.dropPagesAwayFrom(first / PAGE_SIZE);
+                loadPage(Math.max(0, first - PREFETCH_DISTANCE) / PAGE_SIZE);
+                loadPage(Math.min(adapter.getItemCount() - 1, last + PREFETCH_DISTANCE) / PAGE_SIZE);
+            }
+        });
+
+        pageExecutor = Executors.newSingleThreadExecutor();
+        exportExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+        // Lists the entries there are when the screen is opened, newest first
+        store = ScanHistory.getInstance(requireContext()).getExistingStore();
+        adapter.reset(store != null ? store.size() : 0);
+        emptyTextView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        if (store == null) {
+            exportCsvButton.setEnabled(false);
+            exportJsonButton.setEnabled(false);
+        }
+        return root;
+    }
+
+    // Runs on the UI thread; does nothing if the page is loaded or already being read
+    private void loadPage(final int pageIndex) {
+        if (store == null || !adapter.startLoading(pageIndex)) {
+            return;
+        }
+        final int generation = adapter.generation;
+        // Row 0 is the newest entry, whose id is one less than the entry count
+        final long beforeId = adapter.getItemCount() - (long) pageIndex * PAGE_SIZE;
+        pageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<ScanHistoryStore.Entry> page;
+                try {
+                    page = store.page(beforeId, PAGE_SIZE);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error reading the scan history", e);
+                    page = null;
+                }
+                final List<ScanHistoryStore.Entry> entries = page;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (adapter.generation == generation) {
+                            adapter.onPageLoaded(pageIndex, entries);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void chooseExportFile(ScanExporter.Format format, int requestCode) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(format.mimeType);
+        intent.putExtra(Intent.EXTRA_TITLE, "scans-" + System.currentTimeMillis() + "." + format.extension);
+        startActivityForResult(intent, requestCode);
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if ((requestCode != REQUEST_EXPORT_CSV && requestCode != REQUEST_EXPORT_JSON_LINES)
+                || resultCode != Activity.RESULT_OK || data == null || data.getData() == null || store == null) {
+            return;
+        }
+        export(data.getData(), requestCode == REQUEST_EXPORT_CSV ? ScanExporter.Format.CSV : ScanExporter.Format.JSON_LINES);
+    }
+
+    private void export(final Uri uri, final ScanExporter.Format format) {
+        final Context context = requireContext().getApplicationContext();
+        final ScanHistoryStore exported = store;
+        // The score columns are named after the model's classes when it is loaded; an export is
+        // not worth loading it for
+        Classifier model = ModelRegistry.getInstance(context).getLoadedModel();
+        final String[] classNames = new String[exported.getNumClasses()];
+        for (int i = 0; model != null && i < classNames.length && i < model.getNumClasses(); i++) {
+            classNames[i] = model.getLabel(i);
+        }
+
+        exportCsvButton.setEnabled(false);
+        exportJsonButton.setEnabled(false);
+        Toast.makeText(context, "Exporting " + exported.size() + " scans...", Toast.LENGTH_SHORT).show();
+        exportExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                ContentResolver resolver = context.getContentResolver();
+                try (OutputStream out = resolver.openOutputStream(uri)) {
+                    if (out == null) {
+                        throw new IOException("Cannot open " + uri);
+                    }
+                    int rows = new ScanExporter(exported, classNames).export(out, format, null);
+                    message = String.format(Locale.US, "Exported %d scans", rows);
+                } catch (IOException | InterruptedException e) {
+                    Log.e(TAG, "Error exporting the scan history", e);
+                    message = "Error exporting the scan history";
+                    // Leaves no half-written file behind
+                    try {
+                        DocumentsContract.deleteDocument(resolver, uri);
+                    } catch (Exception deleteError) {
+                        Log.w(TAG, "Cannot delete " + uri, deleteError);
+                    }
+                }
+                final String toast = message;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        exportCsvButton.setEnabled(true);
+                        exportJsonButton.setEnabled(true);
+                        Toast.makeText(context, toast, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        });
+    }
+
+    // The history already holds a small JPEG, so only the memory tier is worth filling
+    private void bindThumbnail(ImageView view, final ScanHistoryStore.Entry entry) {
+        Thumbnails.bind(view, "history:" + entry.id, false, new ThumbnailCache.Source<Bitmap>() {
+            @Override
+            public Bitmap load() throws IOException {
+                byte[] jpeg = store.readThumbnail(entry);
+                return BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+            }
+        });
+    }
+
+    private String describe(ScanHistoryStore.Entry entry) {
+        String source = entry.source >= 0 && entry.source < SOURCE_NAMES.length ? SOURCE_NAMES[entry.source] : "Unknown";
+        return dateFormat.format(new Date(entry.timestamp)) + " - " + source + " - " + entry.latencyMs + " ms";
+    }
+
+    // Holds only the pages near the screen, so scrolling through a long history never brings
+    // all of it into memory. Rows whose page is not loaded yet show a placeholder.
+    private class HistoryAdapter extends RecyclerView.Adapter<EntryViewHolder> {
+        private final Map<Integer, List<ScanHistoryStore.Entry>> pages = new HashMap<>();
+        private final Set<Integer> loadingPages = new HashSet<>();
+        private int entryCount;
+        private int visiblePage;
+        // Tells pages read for an earlier reset() apart
+        int generation;
+
+        void reset(int entryCount) {
+            this.entryCount = entryCount;
+            pages.clear();
+            loadingPages.clear();
+            visiblePage = 0;
+            generation++;
+            notifyDataSetChanged();
+        }
+
+        boolean startLoading(int pageIndex) {
+            if (pageIndex < 0 || (long) pageIndex * PAGE_SIZE >= entryCount
+                    || pages.containsKey(pageIndex) || loadingPages.contains(pageIndex)) {
+                return false;
+            }
+            loadingPages.add(pageIndex);
+            return true;
+        }
+
+        // page is null when it could not be read; its rows keep the placeholder
+        void onPageLoaded(int pageIndex, List<ScanHistoryStore.Entry> page) {
+            loadingPages.remove(pageIndex);
+            // Not kept if the list has been scrolled far away in the meantime
+            if (page == null || Math.abs(pageIndex - visiblePage) > MAX_PAGE_DISTANCE) {
+                return;
+            }
+            pages.put(pageIndex, page);
+            int start = pageIndex * PAGE_SIZE;
+            notifyItemRangeChanged(start, Math.min(PAGE_SIZE, entryCount - start));
+        }
+
+        void dropPagesAwayFrom(int pageIndex) {
+            visiblePage = pageIndex;
+            Iterator<Integer> loaded = pages.keySet().iterator();
+            while (loaded.hasNext()) {
+                if (Math.abs(loaded.next() - pageIndex) > MAX_PAGE_DISTANCE) {
+                    loaded.remove();
+                }
+            }
+        }
+
+        @Override
+        public EntryViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new EntryViewHolder(LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_history, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(EntryViewHolder holder, int position) {
+            int pageIndex = position / PAGE_SIZE;
+            List<ScanHistoryStore.Entry> page = pages.get(pageIndex);
+            int offset = position % PAGE_SIZE;
+            if (page == null || offset >= page.size()) {
+                holder.labelTextView.setText("Loading...");
+                holder.detailsTextView.setText("");
+                Thumbnails.unbind(holder.thumbnailView);
+                holder.thumbnailView.setImageBitmap(null);
+                loadPage(pageIndex);
+                return;
+            }
+            ScanHistoryStore.Entry entry = page.get(offset);
+            float confidence = entry.labelIndex >= 0 && entry.labelIndex < entry.scores.length
+                    ? entry.scores[entry.labelIndex] * 100 : 0;
+            holder.labelTextView.setText(String.format("%s (%.1f%%)", entry.label, confidence));
+            holder.detailsTextView.setText(describe(entry));
+            if (entry.hasThumbnail()) {
+                bindThumbnail(holder.thumbnailView, entry);
+            } else {
+                Thumbnails.unbind(holder.thumbnailView);
+                holder.thumbnailView.setImageBitmap(null);
+            }
+        }
+
+        // Rows that scrolled off screen stop waiting for their thumbnails
+        @Override
+        public void onViewRecycled(EntryViewHolder holder) {
+            Thumbnails.unbind(holder.thumbnailView);
+        }
+
+        @Override
+        public int getItemCount() {
+            return entryCount;
+        }
+    }
+
+    private static class EntryViewHolder extends RecyclerView.ViewHolder {
+        final ImageView thumbnailView;
+        final TextView labelTextView;
+        final TextView detailsTextView;
+
+        EntryViewHolder(View itemView) {
+            super(itemView);
+            thumbnailView = itemView.findViewById(R.id.history_thumbnail);
+            labelTextView = itemView.findViewById(R.id.history_label_text_view);
+            detailsTextView = itemView.findViewById(R.id.history_details_text_view);
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        pageExecutor.shutdownNow();
+        // A running export is left to finish
+        exportExecutor.shutdown();
+    }
+}
@@ -9,9 +9,11 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.navigation.Navigation;
 
 import com.bluejamesbond.text.DocumentView;
 import com.bluejamesbond.text.style.TextAlignment;
+import com.example.licenta.R;
 import com.example.licenta.databinding.FragmentHomeBinding;
 
 public class HomeFragment extends Fragment {
@@ -36,6 +38,9 @@ public class HomeFragment extends Fragment {
             textAppInfo.getDocumentLayoutParams().setTextAlignment(TextAlignment.JUSTIFIED);
         });
 
+        binding.buttonBenchmark.setOnClickListener(v ->
+                Navigation.findNavController(v).navigate(R.id.navigation_benchmark));
+
         return root;
     }
 
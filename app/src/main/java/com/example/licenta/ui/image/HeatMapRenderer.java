@@ -0,0 +1,37 @@
+package com.example.licenta.ui.image;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.example.licenta.utils.TileScanner;
+
+// Tints each scanned tile of a copy of the photo red in proportion to its disease score
+final class HeatMapRenderer {
+    // Opacity of a tile the model is certain is diseased; overlapping tiles add up
+    private static final int MAX_ALPHA = 110;
+
+    private HeatMapRenderer() {
+    }
+
+    // scannedWidth is the width of the image the tiles were cut from, which may be a larger
+    // decode of the same photo than source
+    static Bitmap render(Bitmap source, TileScanner.Result result, int scannedWidth) {
+        float scale = source.getWidth() / (float) scannedWidth;
+        Bitmap overlay = source.copy(Bitmap.Config.ARGB_8888, true);
+        Canvas canvas = new Canvas(overlay);
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
+        for (TileScanner.Tile tile : result.tiles) {
+            float heat = result.heat[tile.row * result.columns + tile.column];
+            if (heat <= 0) {
+                continue;
+            }
+            paint.setColor(Color.argb(Math.round(heat * MAX_ALPHA), 255, 0, 0));
+            canvas.drawRect(tile.left * scale, tile.top * scale,
+                    (tile.left + tile.size) * scale, (tile.top + tile.size) * scale, paint);
+        }
+        return overlay;
+    }
+}
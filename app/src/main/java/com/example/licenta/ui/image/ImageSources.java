@@ -0,0 +1,55 @@
+package com.example.licenta.ui.image;
+
+import android.content.ClipData;
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Collects the image Uris picked for a bulk scan
+public final class ImageSources {
+    private ImageSources() {
+    }
+
+    // Uris returned by ACTION_GET_CONTENT with EXTRA_ALLOW_MULTIPLE
+    public static List<Uri> fromPickerResult(Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        ClipData clipData = data.getClipData();
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                uris.add(clipData.getItemAt(i).getUri());
+            }
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
+        }
+        return uris;
+    }
+
+    // Images directly inside a folder picked with ACTION_OPEN_DOCUMENT_TREE; only Uris are
+    // kept, so large folders cost a few bytes per photo. Call off the main thread.
+    static List<Uri> fromDocumentTree(ContentResolver resolver, Uri treeUri) {
+        List<Uri> uris = new ArrayList<>();
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri,
+                DocumentsContract.getTreeDocumentId(treeUri));
+        String[] projection = {
+                DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                DocumentsContract.Document.COLUMN_MIME_TYPE
+        };
+        try (Cursor cursor = resolver.query(childrenUri, projection, null, null, null)) {
+            if (cursor == null) {
+                return uris;
+            }
+            while (cursor.moveToNext()) {
+                String mimeType = cursor.getString(1);
+                if (mimeType != null && mimeType.startsWith("image/")) {
+                    uris.add(DocumentsContract.buildDocumentUriUsingTree(treeUri, cursor.getString(0)));
+                }
+            }
+        }
+        return uris;
+    }
+}
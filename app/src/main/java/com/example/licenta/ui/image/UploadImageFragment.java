@@ -1,18 +1,20 @@
 package com.example.licenta.ui.image;
 
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.provider.MediaStore;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
@@ -23,25 +25,82 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.licenta.R;
-import com.example.licenta.utils.TFLiteModel;
+import com.example.licenta.utils.BatchScanPipeline;
+import com.example.licenta.utils.BitmapHasher;
+import com.example.licenta.utils.BitmapPool;
+import com.example.licenta.utils.BitmapPreprocessor;
+import com.example.licenta.utils.Classifier;
+import com.example.licenta.utils.InterpreterPool;
+import com.example.licenta.utils.ModelRegistry;
+import com.example.licenta.utils.PipelineMetrics;
+import com.example.licenta.utils.PredictionCache;
+import com.example.licenta.utils.PredictionResult;
+import com.example.licenta.utils.SampledBitmapDecoder;
+import com.example.licenta.utils.ScanHistory;
+import com.example.licenta.utils.ScanHistoryStore;
+import com.example.licenta.utils.ThumbnailCache;
+import com.example.licenta.utils.Thumbnails;
+import com.example.licenta.utils.TileScanner;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class UploadImageFragment extends Fragment {
     private static final int REQUEST_IMAGE_SELECT = 1;
-    private static final int IMG_SIZE = 224; // Image size used in training
+    private static final int REQUEST_SCAN_IMAGES = 2;
+    private static final int REQUEST_SCAN_FOLDER = 3;
+    private static final int SCAN_BATCH_SIZE = 8;
+    private static final int SCAN_DECODE_THREADS = 2;
+    private static final long SCAN_PROGRESS_INTERVAL_MS = 100;
+    private static final int PREVIEW_MAX_SIZE = 720;
+    // Shown from the thumbnail cache while the full preview decodes
+    private static final int PREVIEW_THUMBNAIL_SIZE = 160;
+    // Decoded scan images waiting for reuse; enough for the images in flight in the pipeline
+    private static final long SCAN_BITMAP_POOL_BYTES = 6 * 1024 * 1024;
+    // The prediction plus this many ranked alternatives
+    private static final int TOP_K = 3;
+    // Detailed scan: overlapping tiles of the decoded photo, capped in count and time
+    private static final int MAX_TILES = 16;
+    private static final float TILE_OVERLAP = 0.25f;
+    private static final long TILE_BUDGET_MS = 1500;
+    // Short side of the separate decode the tiles are cut from. The preview is too small to show
+    // more than the whole-image pass does; this stays a few MB even for a 50 MP photo.
+    private static final int TILE_SOURCE_SIZE = 1280;
+    private static final String HEALTHY_LABEL = "Healthy";
     private ImageView imageView;
     private Button uploadButton;
     private Button predictButton;
+    private CheckBox tiledModeCheckBox;
     private TextView resultTextView;
     private TextView latencyTextView;
     private TextView accuracyTextView;
     private ProgressBar loadingIcon;
-    private TFLiteModel tfliteModel;
+    private Button scanImagesButton;
+    private Button scanFolderButton;
+    private Button cancelScanButton;
+    private ProgressBar scanProgressBar;
+    private TextView scanProgressTextView;
+    private TextView scanSummaryTextView;
+    private BatchScanPipeline<Uri, Bitmap> scanPipeline;
+    private final BitmapPool scanBitmapPool = new BitmapPool(SCAN_BITMAP_POOL_BYTES);
+    private ModelRegistry registry;
+    private ModelRegistry.Handle modelHandle;
+    private ScanHistory history;
     private Bitmap selectedBitmap;
+    // Where selectedBitmap was decoded from, recorded with its scans
+    private String selectedReference;
     private ExecutorService executorService;
+    private BitmapPreprocessor preprocessor;
+    private ByteBuffer inputBuffer;
+    private float[] scores;
+    private final int[] topClasses = new int[TOP_K];
+    private TileScanner tileScanner;
+    private int[] tilePixels;
     private Handler mainHandler;
 
     @Nullable
@@ -51,11 +110,30 @@ public class UploadImageFragment extends Fragment {
         imageView = root.findViewById(R.id.imageView);
         uploadButton = root.findViewById(R.id.button_upload_image);
         predictButton = root.findViewById(R.id.button_predict);
+        tiledModeCheckBox = root.findViewById(R.id.tiled_mode_checkbox);
         resultTextView = root.findViewById(R.id.result_text_view);
         latencyTextView = root.findViewById(R.id.latency_text_view);
         accuracyTextView = root.findViewById(R.id.accuracy_text_view);
         loadingIcon = root.findViewById(R.id.loading_icon);
-        tfliteModel = new TFLiteModel(requireActivity());
+        scanImagesButton = root.findViewById(R.id.button_scan_images);
+        scanFolderButton = root.findViewById(R.id.button_scan_folder);
+        cancelScanButton = root.findViewById(R.id.button_cancel_scan);
+        scanProgressBar = root.findViewById(R.id.scan_progress_bar);
+        scanProgressTextView = root.findViewById(R.id.scan_progress_text_view);
+        scanSummaryTextView = root.findViewById(R.id.scan_summary_text_view);
+        registry = ModelRegistry.getInstance(requireContext());
+        modelHandle = registry.acquire();
+        history = ScanHistory.getInstance(requireContext());
+        modelHandle.whenReady(new ModelRegistry.Listener() {
+            @Override
+            public void onModelReady(Classifier model) {
+            }
+
+            @Override
+            public void onModelError(Exception error) {
+                Toast.makeText(getActivity(), "Error loading the model", Toast.LENGTH_SHORT).show();
+            }
+        });
 
         executorService = Executors.newSingleThreadExecutor();
         mainHandler = new Handler(Looper.getMainLooper());
@@ -72,10 +150,41 @@ public class UploadImageFragment extends Fragment {
         predictButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (selectedBitmap != null) {
-                    runPrediction();
-                } else {
+                Classifier model = modelHandle.getModel();
+                if (selectedBitmap == null) {
                     Toast.makeText(getActivity(), "Please upload an image first", Toast.LENGTH_SHORT).show();
+                } else if (model == null) {
+                    Toast.makeText(getActivity(), "The model is still loading", Toast.LENGTH_SHORT).show();
+                } else if (tiledModeCheckBox.isChecked()) {
+                    runTiledPrediction(model);
+                } else {
+                    runPrediction(model);
+                }
+            }
+        });
+
+        scanImagesButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+                intent.setType("image/*");
+                intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+                startActivityForResult(intent, REQUEST_SCAN_IMAGES);
+            }
+        });
+
+        scanFolderButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE), REQUEST_SCAN_FOLDER);
+            }
+        });
+
+        cancelScanButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (scanPipeline != null) {
+                    scanPipeline.cancel();
                 }
             }
         });
@@ -86,80 +195,364 @@ public class UploadImageFragment extends Fragment {
     @Override
     public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == REQUEST_IMAGE_SELECT && resultCode == Activity.RESULT_OK && data != null) {
-            Uri imageUri = data.getData();
-            try {
-                selectedBitmap = MediaStore.Images.Media.getBitmap(requireActivity().getContentResolver(), imageUri);
-                imageView.setImageBitmap(selectedBitmap);
-                imageView.setVisibility(View.VISIBLE);
-                predictButton.setVisibility(View.VISIBLE);
-            } catch (IOException e) {
-                e.printStackTrace();
-                Log.e("UploadImageFragment", "Error processing the image", e);
-                Toast.makeText(getActivity(), "Error processing the image", Toast.LENGTH_SHORT).show();
-            }
+        if (requestCode == REQUEST_SCAN_IMAGES && resultCode == Activity.RESULT_OK && data != null) {
+            startBatchScan(ImageSources.fromPickerResult(data));
+        } else if (requestCode == REQUEST_SCAN_FOLDER && resultCode == Activity.RESULT_OK && data != null) {
+            final Uri treeUri = data.getData();
+            final ContentResolver resolver = requireContext().getContentResolver();
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final List<Uri> uris = ImageSources.fromDocumentTree(resolver, treeUri);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            startBatchScan(uris);
+                        }
+                    });
+                }
+            });
+        } else if (requestCode == REQUEST_IMAGE_SELECT && resultCode == Activity.RESULT_OK && data != null) {
+            final Uri imageUri = data.getData();
+            // One bounded decode serves both the preview and the model input
+            Classifier model = modelHandle.getModel();
+            int modelSize = model != null ? Math.max(model.getInputWidth(), model.getInputHeight()) : 0;
+            int previewSize = Math.min(getResources().getDisplayMetrics().widthPixels, PREVIEW_MAX_SIZE);
+            final int decodeSize = Math.max(modelSize, previewSize);
+            final SampledBitmapDecoder decoder = new SampledBitmapDecoder(requireContext().getContentResolver());
+            // A photo picked before comes back from the disk tier without touching the original
+            Thumbnails.bind(imageView, imageUri.toString(), true, new ThumbnailCache.Source<Bitmap>() {
+                @Override
+                public Bitmap load() throws IOException {
+                    return decoder.decode(imageUri, PREVIEW_THUMBNAIL_SIZE);
+                }
+            });
+            imageView.setVisibility(View.VISIBLE);
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long time = System.nanoTime();
+                        final Bitmap bitmap = decoder.decode(imageUri, decodeSize);
+                        PipelineMetrics.GALLERY.lap(PipelineMetrics.Stage.DECODE, time);
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                selectedBitmap = bitmap;
+                                selectedReference = imageUri.toString();
+                                Thumbnails.unbind(imageView);
+                                imageView.setImageBitmap(selectedBitmap);
+                                imageView.setVisibility(View.VISIBLE);
+                                predictButton.setVisibility(View.VISIBLE);
+                                tiledModeCheckBox.setVisibility(View.VISIBLE);
+                            }
+                        });
+                    } catch (IOException e) {
+                        Log.e("UploadImageFragment", "Error processing the image", e);
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                Toast.makeText(getActivity(), "Error processing the image", Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                    }
+                }
+            });
         } else {
             Log.e("UploadImageFragment", "Image selection failed or no data");
         }
     }
 
-    private float[] preprocessImage(Bitmap bitmap) {
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, IMG_SIZE, IMG_SIZE, true);
-
-        int width = resizedBitmap.getWidth();
-        int height = resizedBitmap.getHeight();
-        int[] pixels = new int[width * height];
-        resizedBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-
-        float[] input = new float[width * height * 3];
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-            input[i * 3] = ((pixel >> 16) & 0xFF) / 255.0f; // Red
-            input[i * 3 + 1] = ((pixel >> 8) & 0xFF) / 255.0f; // Green
-            input[i * 3 + 2] = (pixel & 0xFF) / 255.0f; // Blue
+    // tileScores marks a detailed scan, whose aggregated scores rank the classes but are not
+    // probabilities, so they are not shown as percentages
+    private void displayResult(PredictionResult result, boolean tileScores) {
+        StringBuilder text = new StringBuilder("Prediction: ").append(result.label);
+        int count = result.topK(TOP_K, topClasses);
+        for (int i = 1; i < count; i++) {
+            float score = result.getScore(topClasses[i]);
+            text.append(i == 1 ? "\nAlternatives: " : ", ")
+                    .append(result.getLabel(topClasses[i]))
+                    .append(tileScores ? String.format(" (%.2f)", score) : String.format(" (%.1f%%)", score * 100));
         }
-
-        return input;
-    }
-
-    private void displayResult(String label, float accuracy, long latency) {
-        resultTextView.setText("Prediction: " + label);
+        resultTextView.setText(text);
         resultTextView.setVisibility(View.VISIBLE);
 
-        accuracyTextView.setText(String.format("Accuracy: %.2f%%", accuracy));
+        accuracyTextView.setText(tileScores ? String.format("Tile score: %.2f", result.accuracy / 100)
+                : String.format("Accuracy: %.2f%%", result.accuracy));
         accuracyTextView.setVisibility(View.VISIBLE);
 
-        latencyTextView.setText("Latency: " + latency + " ms");
+        latencyTextView.setText("Latency: " + result.latency + " ms");
         latencyTextView.setVisibility(View.VISIBLE);
     }
 
-    private void runPrediction() {
+    private void runPrediction(final Classifier model) {
         loadingIcon.setVisibility(View.VISIBLE);
         resultTextView.setVisibility(View.GONE);
         latencyTextView.setVisibility(View.GONE);
         accuracyTextView.setVisibility(View.GONE);
 
+        // The UI thread replaces selectedBitmap when another photo is picked, so the hash, the
+        // input and the history entry all come from this one
+        final Bitmap bitmap = selectedBitmap;
+        final String reference = selectedReference;
         executorService.execute(new Runnable() {
             @Override
             public void run() {
-                float[] input = preprocessImage(selectedBitmap);
-                final TFLiteModel.PredictionResult result = tfliteModel.predict(input);
+                // The preprocessor and its buffers are only touched on this executor
+                if (preprocessor == null) {
+                    preprocessor = new BitmapPreprocessor(model.newPreprocessor());
+                    inputBuffer = model.newInputBuffer();
+                    scores = new float[model.getNumClasses()];
+                }
+                final PipelineMetrics metrics = PipelineMetrics.GALLERY;
+                final long startTime = System.nanoTime();
+                // A photo classified before by this model is answered from the cache
+                PredictionCache cache = registry.getPredictionCache(model);
+                String key = BitmapHasher.hash(bitmap);
+                float[] cached = cache != null ? cache.get(key) : null;
+                final PredictionResult result;
+                if (cached != null) {
+                    result = model.toResult(cached, 0, 0);
+                } else {
+                    long time = System.nanoTime();
+                    preprocessor.preprocess(bitmap, inputBuffer);
+                    time = metrics.lap(PipelineMetrics.Stage.PREPROCESS, time);
+                    long latency = model.predictInto(inputBuffer, scores);
+                    time = metrics.lap(PipelineMetrics.Stage.INFERENCE, time);
+                    if (cache != null) {
+                        cache.put(key, scores, 0);
+                    }
+                    result = model.toResult(scores, 0, latency);
+                    metrics.lap(PipelineMetrics.Stage.POSTPROCESS, time);
+                }
+                final long postTime = System.nanoTime();
+                history.record(result, ScanHistoryStore.SOURCE_GALLERY, reference, bitmap);
 
                 mainHandler.post(new Runnable() {
                     @Override
                     public void run() {
                         loadingIcon.setVisibility(View.GONE);
-                        displayResult(result.label, result.accuracy, result.latency);
+                        displayResult(result, false);
+                        long shown = metrics.lap(PipelineMetrics.Stage.DELIVERY, postTime);
+                        metrics.record(PipelineMetrics.Stage.TOTAL, shown - startTime);
+                        metrics.onFrame();
                     }
                 });
             }
         });
     }
 
+    private void runTiledPrediction(final Classifier model) {
+        loadingIcon.setVisibility(View.VISIBLE);
+        resultTextView.setVisibility(View.GONE);
+        latencyTextView.setVisibility(View.GONE);
+        accuracyTextView.setVisibility(View.GONE);
+        final Bitmap bitmap = selectedBitmap;
+        final String reference = selectedReference;
+        final SampledBitmapDecoder decoder = new SampledBitmapDecoder(requireContext().getContentResolver());
+
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (tileScanner == null) {
+                    tileScanner = new TileScanner(model, SCAN_BATCH_SIZE, MAX_TILES, TILE_OVERLAP,
+                            TILE_BUDGET_MS * 1_000_000L, HEALTHY_LABEL);
+                }
+                Bitmap source;
+                try {
+                    source = decoder.decode(Uri.parse(reference), TILE_SOURCE_SIZE);
+                } catch (IOException e) {
+                    // A coarser scan of the preview is still better than none
+                    Log.w("UploadImageFragment", "Cannot decode " + reference + " for tiling", e);
+                    source = bitmap;
+                }
+                int width = source.getWidth();
+                int height = source.getHeight();
+                if (tilePixels == null || tilePixels.length < width * height) {
+                    tilePixels = new int[width * height];
+                }
+                source.getPixels(tilePixels, 0, width, 0, 0, width, height);
+                if (source != bitmap) {
+                    source.recycle();
+                }
+                final TileScanner.Result result = tileScanner.scan(tilePixels, width, height);
+                final Bitmap heatMap = HeatMapRenderer.render(bitmap, result, width);
+                history.record(result.prediction, ScanHistoryStore.SOURCE_GALLERY, reference, bitmap);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadingIcon.setVisibility(View.GONE);
+                        if (selectedBitmap == bitmap) {
+                            imageView.setImageBitmap(heatMap);
+                        }
+                        displayResult(result.prediction, true);
+                        latencyTextView.setText("Latency: " + result.elapsedMs + " ms, "
+                                + result.tilesScanned + "/" + result.tiles.size() + " tiles"
+                                + (result.truncated ? " (time limit reached)" : ""));
+                    }
+                });
+            }
+        });
+    }
+
+    private void startBatchScan(List<Uri> uris) {
+        Classifier model = modelHandle.getModel();
+        if (model == null) {
+            Toast.makeText(getActivity(), "The model is still loading", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (uris.isEmpty()) {
+            Toast.makeText(getActivity(), "No images found", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (scanPipeline != null) {
+            scanPipeline.cancel();
+        }
+
+        // Scan images are only read by the preprocessor, so their pixel memory is recycled
+        final SampledBitmapDecoder decoder = new SampledBitmapDecoder(requireContext().getContentResolver(),
+                scanBitmapPool);
+        final int decodeSize = Math.max(model.getInputWidth(), model.getInputHeight());
+        final BitmapPreprocessor batchPreprocessor = new BitmapPreprocessor(model.newPreprocessor());
+        // Spread batches over the pool's interpreters when the registry has built one
+        InterpreterPool pool = registry.getInterpreterPool();
+        scanPipeline = new BatchScanPipeline<>(pool != null ? pool : model,
+                new BatchScanPipeline.Decoder<Uri, Bitmap>() {
+                    @Override
+                    public Bitmap decode(Uri uri) throws IOException {
+                        return decoder.decode(uri, decodeSize);
+                    }
+                },
+                new BatchScanPipeline.Preprocessor<Bitmap>() {
+                    @Override
+                    public void preprocess(Bitmap image, ByteBuffer batch, int imageIndex) {
+                        batchPreprocessor.preprocess(image, batch, imageIndex);
+                    }
+                },
+                new ScanListener(batchPreprocessor), SCAN_BATCH_SIZE, SCAN_DECODE_THREADS);
+        // Cache hits and failed images come back as well, not only the preprocessed ones
+        scanPipeline.setRecycler(new BatchScanPipeline.Recycler<Bitmap>() {
+            @Override
+            public void recycle(Bitmap image) {
+                scanBitmapPool.put(image);
+            }
+        });
+        scanPipeline.setMetrics(PipelineMetrics.GALLERY);
+        if (pool != null) {
+            scanPipeline.setInferenceThreads(pool.size());
+        }
+        PredictionCache cache = registry.getPredictionCache(model);
+        if (cache != null) {
+            scanPipeline.setCache(cache, new BatchScanPipeline.Hasher<Bitmap>() {
+                @Override
+                public String hash(Bitmap image) {
+                    return BitmapHasher.hash(image);
+                }
+            });
+        }
+
+        scanImagesButton.setEnabled(false);
+        scanFolderButton.setEnabled(false);
+        cancelScanButton.setVisibility(View.VISIBLE);
+        scanProgressBar.setMax(uris.size());
+        scanProgressBar.setProgress(0);
+        scanProgressBar.setVisibility(View.VISIBLE);
+        scanProgressTextView.setText("Scanning " + uris.size() + " images...");
+        scanProgressTextView.setVisibility(View.VISIBLE);
+        scanSummaryTextView.setVisibility(View.GONE);
+        scanPipeline.start(uris.iterator(), uris.size());
+    }
+
+    // Runs on the pipeline's sink thread; the UI is refreshed at most every SCAN_PROGRESS_INTERVAL_MS
+    private class ScanListener implements BatchScanPipeline.Listener<Uri> {
+        private final Map<String, Integer> labelCounts = new TreeMap<>();
+        private final BitmapPreprocessor preprocessor;
+        private long lastUpdateTime;
+
+        ScanListener(BitmapPreprocessor preprocessor) {
+            this.preprocessor = preprocessor;
+        }
+
+        @Override
+        public void onResult(Uri item, PredictionResult result) {
+            Integer count = labelCounts.get(result.label);
+            labelCounts.put(result.label, count == null ? 1 : count + 1);
+            // The decoded image is already back in the pool, so batch entries have no thumbnail
+            history.record(result, ScanHistoryStore.SOURCE_BATCH, item.toString(), null);
+        }
+
+        @Override
+        public void onError(Uri item, Exception error) {
+            Log.e("UploadImageFragment", "Error scanning " + item, error);
+        }
+
+        @Override
+        public void onProgress(final int processed, final int failed, final int total, final float imagesPerSecond) {
+            long now = SystemClock.uptimeMillis();
+            if (processed < total && now - lastUpdateTime < SCAN_PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastUpdateTime = now;
+            final String summary = summarize(failed);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    scanProgressBar.setProgress(processed);
+                    scanProgressTextView.setText(String.format("Scanned %d/%d (%.1f images/s)", processed, total, imagesPerSecond));
+                    scanSummaryTextView.setText(summary);
+                    scanSummaryTextView.setVisibility(View.VISIBLE);
+                }
+            });
+        }
+
+        @Override
+        public void onFinished(final boolean cancelled) {
+            // After a cancel the preprocess thread may still be on its last image; release()
+            // waits for it
+            preprocessor.release();
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    scanImagesButton.setEnabled(true);
+                    scanFolderButton.setEnabled(true);
+                    cancelScanButton.setVisibility(View.GONE);
+                    if (cancelled) {
+                        scanProgressTextView.setText(scanProgressTextView.getText() + " - cancelled");
+                    }
+                }
+            });
+        }
+
+        private String summarize(int failed) {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : labelCounts.entrySet()) {
+                builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+            if (failed > 0) {
+                builder.append("Failed: ").append(failed);
+            }
+            return builder.toString().trim();
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        tfliteModel.close();
+        if (scanPipeline != null) {
+            scanPipeline.cancel();
+        }
+        modelHandle.close();
+        // Queued behind any prediction still running, as the preprocessor belongs to the executor
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (preprocessor != null) {
+                    preprocessor.release();
+                }
+            }
+        });
         executorService.shutdown();
+        scanBitmapPool.clear();
     }
 }
@@ -0,0 +1,160 @@
+package com.example.licenta.utils;
+
+/**
+ * Recycles int, float and byte arrays between users of the same size class, so per-image
+ * scratch arrays are allocated once instead of once per image. Sizes are grouped by powers of
+ * two: {@code getInts(n)} returns an array of at least n elements (new ones are rounded up to
+ * the next power of two), and callers use only the first n. Lookups neither box nor allocate,
+ * and the pool keeps at most {@code maxBytes} of idle arrays; anything beyond that is left to
+ * the garbage collector.
+ */
+public final class ArrayPool {
+    // Shared by the preprocessing paths; cleared from MainActivity when memory runs low
+    public static final ArrayPool SHARED = new ArrayPool(8 * 1024 * 1024);
+
+    private static final int SIZE_CLASSES = 31;
+    private static final int MAX_PER_CLASS = 4;
+
+    private final long maxBytes;
+    private long bytes;
+    private long allocations;
+    private final Slots ints = new Slots(4) {
+        @Override
+        Object allocate(int length) {
+            return new int[length];
+        }
+
+        @Override
+        int length(Object array) {
+            return ((int[]) array).length;
+        }
+    };
+    private final Slots floats = new Slots(4) {
+        @Override
+        Object allocate(int length) {
+            return new float[length];
+        }
+
+        @Override
+        int length(Object array) {
+            return ((float[]) array).length;
+        }
+    };
+    private final Slots byteArrays = new Slots(1) {
+        @Override
+        Object allocate(int length) {
+            return new byte[length];
+        }
+
+        @Override
+        int length(Object array) {
+            return ((byte[]) array).length;
+        }
+    };
+
+    public ArrayPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int[] getInts(int minLength) {
+        return (int[]) get(ints, minLength);
+    }
+
+    public float[] getFloats(int minLength) {
+        return (float[]) get(floats, minLength);
+    }
+
+    public byte[] getBytes(int minLength) {
+        return (byte[]) get(byteArrays, minLength);
+    }
+
+    public void put(int[] array) {
+        put(ints, array);
+    }
+
+    public void put(float[] array) {
+        put(floats, array);
+    }
+
+    public void put(byte[] array) {
+        put(byteArrays, array);
+    }
+
+    // Arrays created because nothing suitable was pooled; flat in a steady state
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    // Bytes held by idle arrays
+    public synchronized long getPooledBytes() {
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        ints.clear();
+        floats.clear();
+        byteArrays.clear();
+        bytes = 0;
+    }
+
+    private synchronized Object get(Slots slots, int minLength) {
+        if (minLength < 0) {
+            throw new IllegalArgumentException("Negative array length " + minLength);
+        }
+        // Every array in class c has at least 2^c elements
+        int sizeClass = ceilLog2(minLength);
+        if (sizeClass < SIZE_CLASSES && slots.counts[sizeClass] > 0) {
+            int index = --slots.counts[sizeClass];
+            Object array = slots.arrays[sizeClass][index];
+            slots.arrays[sizeClass][index] = null;
+            bytes -= (long) slots.length(array) * slots.elementBytes;
+            return array;
+        }
+        allocations++;
+        return slots.allocate(sizeClass < SIZE_CLASSES ? 1 << sizeClass : minLength);
+    }
+
+    private synchronized void put(Slots slots, Object array) {
+        int length = slots.length(array);
+        long size = (long) length * slots.elementBytes;
+        int sizeClass = floorLog2(length);
+        if (length == 0 || sizeClass >= SIZE_CLASSES || slots.counts[sizeClass] == MAX_PER_CLASS
+                || bytes + size > maxBytes) {
+            return;
+        }
+        slots.arrays[sizeClass][slots.counts[sizeClass]++] = array;
+        bytes += size;
+    }
+
+    static int ceilLog2(int n) {
+        return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    static int floorLog2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    // Idle arrays of one element type, MAX_PER_CLASS per size class
+    private abstract static class Slots {
+        final int elementBytes;
+        final Object[][] arrays = new Object[SIZE_CLASSES][MAX_PER_CLASS];
+        final int[] counts = new int[SIZE_CLASSES];
+
+        Slots(int elementBytes) {
+            this.elementBytes = elementBytes;
+        }
+
+        abstract Object allocate(int length);
+
+        abstract int length(Object array);
+
+        void clear() {
+            for (int c = 0; c < SIZE_CLASSES; c++) {
+                for (int i = 0; i < counts[c]; i++) {
+                    arrays[c][i] = null;
+                }
+                counts[c] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.licenta.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Times candidate {@link BackendConfig}s on the bundled sample leaf and remembers the fastest
+ * one for this device. Runs once; the result is applied the next time the model is loaded.
+ */
+public class BackendAutotuner {
+    private static final String TAG = "BackendAutotuner";
+    private static final String PREFS_NAME = "backend_autotune";
+    private static final String KEY_CONFIG = "config";
+    private static final String KEY_DEVICE = "device";
+    private static final String SAMPLE_IMAGE = "leaf.png";
+    private static final int WARM_UP_RUNS = 2;
+    private static final int TIMED_RUNS = 7;
+
+    // Returns the stored configuration, or null if this device (or OS build) was never tuned
+    public static BackendConfig loadTuned(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(prefs.getString(KEY_DEVICE, null))) {
+            return null;
+        }
+        return BackendConfig.decode(prefs.getString(KEY_CONFIG, null));
+    }
+
+    // Blocks for a few seconds; call from a background thread
+    public static BackendConfig autotune(Context context) throws IOException {
+        Bitmap sample;
+        try (InputStream stream = context.getAssets().open(SAMPLE_IMAGE)) {
+            sample = BitmapFactory.decodeStream(stream);
+        }
+        if (sample == null) {
+            throw new IOException("Could not decode " + SAMPLE_IMAGE);
+        }
+
+        BackendConfig best = null;
+        long bestNanos = Long.MAX_VALUE;
+        for (BackendConfig config : BackendConfig.candidates(Runtime.getRuntime().availableProcessors())) {
+            long medianNanos;
+            try {
+                medianNanos = time(context, config, sample);
+            } catch (Exception e) {
+                Log.w(TAG, "Skipping " + config, e);
+                continue;
+            }
+            Log.i(TAG, config + ": " + medianNanos / 1000 + " us");
+            if (medianNanos < bestNanos) {
+                bestNanos = medianNanos;
+                best = config;
+            }
+        }
+        if (best == null) {
+            throw new IOException("No backend configuration could run the model");
+        }
+
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_DEVICE, Build.FINGERPRINT)
+                .putString(KEY_CONFIG, best.encode())
+                .apply();
+        Log.i(TAG, "Selected " + best);
+        return best;
+    }
+
+    private static long time(Context context, BackendConfig config, Bitmap sample) throws IOException {
+        TFLiteModel model = new TFLiteModel(context, config);
+        BitmapPreprocessor preprocessor = null;
+        try {
+            // A fallback interpreter is not the configuration being measured
+            if (!config.equals(model.getBackendConfig())) {
+                throw new IOException("Backend unavailable");
+            }
+            ByteBuffer input = model.newInputBuffer();
+            preprocessor = new BitmapPreprocessor(model.newPreprocessor());
+            preprocessor.preprocess(sample, input);
+            float[] scores = new float[model.getNumClasses()];
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                model.predictInto(input, scores);
+            }
+            long[] runs = new long[TIMED_RUNS];
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                long start = System.nanoTime();
+                model.predictInto(input, scores);
+                runs[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(runs);
+            return runs[TIMED_RUNS / 2];
+        } finally {
+            if (preprocessor != null) {
+                preprocessor.release();
+            }
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.licenta.utils;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * CPU execution settings for the interpreter: thread count, XNNPACK and NNAPI. When NNAPI
+ * is requested TFLite runs unsupported ops on the CPU, and TFLiteModel falls back to a plain
+ * CPU interpreter if the device has no usable NNAPI driver.
+ */
+public final class BackendConfig {
+    public final int numThreads;
+    public final boolean useXnnpack;
+    public final boolean useNnapi;
+
+    public BackendConfig(int numThreads, boolean useXnnpack, boolean useNnapi) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be at least 1");
+        }
+        this.numThreads = numThreads;
+        this.useXnnpack = useXnnpack;
+        this.useNnapi = useNnapi;
+    }
+
+    // Used until the device has been autotuned
+    public static BackendConfig defaultConfig() {
+        return new BackendConfig(Math.min(4, Runtime.getRuntime().availableProcessors()), true, false);
+    }
+
+    // Configurations worth timing on a device with the given number of cores
+    public static List<BackendConfig> candidates(int cores) {
+        Set<Integer> threadCounts = new TreeSet<>(Arrays.asList(1, 2, 4, cores));
+        List<BackendConfig> candidates = new ArrayList<>();
+        for (int threads : threadCounts) {
+            if (threads > cores) {
+                continue;
+            }
+            candidates.add(new BackendConfig(threads, true, false));
+            candidates.add(new BackendConfig(threads, false, false));
+        }
+        candidates.add(new BackendConfig(1, false, true));
+        return candidates;
+    }
+
+    public BackendConfig withoutNnapi() {
+        return new BackendConfig(numThreads, useXnnpack, false);
+    }
+
+    public BackendConfig withThreads(int threads) {
+        return new BackendConfig(threads, useXnnpack, useNnapi);
+    }
+
+    public Interpreter.Options toOptions() {
+        Interpreter.Options options = new Interpreter.Options();
+        options.setNumThreads(numThreads);
+        options.setUseXNNPACK(useXnnpack);
+        options.setUseNNAPI(useNnapi);
+        return options;
+    }
+
+    // Compact form stored in SharedPreferences, e.g. "4,1,0"
+    public String encode() {
+        return numThreads + "," + (useXnnpack ? 1 : 0) + "," + (useNnapi ? 1 : 0);
+    }
+
+    public static BackendConfig decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new BackendConfig(Integer.parseInt(parts[0]), "1".equals(parts[1]), "1".equals(parts[2]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BackendConfig)) {
+            return false;
+        }
+        BackendConfig other = (BackendConfig) o;
+        return numThreads == other.numThreads && useXnnpack == other.useXnnpack && useNnapi == other.useNnapi;
+    }
+
+    @Override
+    public int hashCode() {
+        return numThreads * 4 + (useXnnpack ? 2 : 0) + (useNnapi ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + numThreads + ", xnnpack=" + useXnnpack + ", nnapi=" + useNnapi;
+    }
+}
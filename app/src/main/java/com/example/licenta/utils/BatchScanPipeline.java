@@ -0,0 +1,401 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams a list of images through decode, preprocess, batched inference and a result sink.
+ * Each stage runs on its own thread(s) and hands work over through small bounded queues, so
+ * stages overlap and a slow stage blocks the ones before it instead of letting decoded images
+ * pile up. Only a handful of images are ever in memory, however long the list is. With a
+ * {@link PredictionCache} set, images seen before are answered right after decoding and skip
+ * preprocessing and inference. Given an {@link InterpreterPool}, several inference workers can
+ * run batches in parallel.
+ *
+ * @param <T> source item, e.g. a content Uri
+ * @param <I> decoded image, e.g. a Bitmap
+ */
+public class BatchScanPipeline<T, I> {
+    private static final Object END = new Object();
+    private static final int MAX_INFERENCE_THREADS = 8;
+
+    public interface Decoder<T, I> {
+        I decode(T item) throws Exception;
+    }
+
+    public interface Hasher<I> {
+        String hash(I image);
+    }
+
+    public interface Preprocessor<I> {
+        // Writes the image into slot number imageIndex of the batch buffer
+        void preprocess(I image, ByteBuffer batch, int imageIndex) throws Exception;
+    }
+
+    // Takes back a decoded image the pipeline is done with, e.g. to reuse its memory
+    public interface Recycler<I> {
+        void recycle(I image);
+    }
+
+    // Called on the sink thread, except onFinished(true) which is called from cancel()
+    public interface Listener<T> {
+        void onResult(T item, PredictionResult result);
+
+        void onError(T item, Exception error);
+
+        void onProgress(int processed, int failed, int total, float imagesPerSecond);
+
+        void onFinished(boolean cancelled);
+    }
+
+    private final Classifier model;
+    private final Decoder<T, I> decoder;
+    private final Preprocessor<I> preprocessor;
+    private final Listener<T> listener;
+    private final int batchSize;
+    private final int decodeThreads;
+    private int inferenceThreads = 1;
+    private PredictionCache cache;
+    private Hasher<I> hasher;
+    private Recycler<I> recycler;
+    private PipelineMetrics metrics;
+
+    private final BlockingQueue<Object> decoded;
+    private final BlockingQueue<Batch<T>> freeBatches;
+    private final BlockingQueue<Object> fullBatches;
+    private final BlockingQueue<Object> results;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean cancelled;
+
+    private Iterator<T> source;
+    private int total;
+
+    public BatchScanPipeline(Classifier model, Decoder<T, I> decoder, Preprocessor<I> preprocessor,
+                             Listener<T> listener, int batchSize, int decodeThreads) {
+        this.model = model;
+        this.decoder = decoder;
+        this.preprocessor = preprocessor;
+        this.listener = listener;
+        this.batchSize = batchSize;
+        this.decodeThreads = decodeThreads;
+
+        // Just enough slack for each stage to keep working while the next one is busy
+        decoded = new ArrayBlockingQueue<>(batchSize * 2);
+        fullBatches = new ArrayBlockingQueue<>(2);
+        results = new ArrayBlockingQueue<>(batchSize * 2);
+        freeBatches = new ArrayBlockingQueue<>(MAX_INFERENCE_THREADS + 1);
+    }
+
+    // Optional; must be called before start()
+    public void setCache(PredictionCache cache, Hasher<I> hasher) {
+        this.cache = cache;
+        this.hasher = hasher;
+    }
+
+    // Optional; every decoded image is handed to the recycler once it has been preprocessed,
+    // answered from the cache or has failed. Must be called before start()
+    public void setRecycler(Recycler<I> recycler) {
+        this.recycler = recycler;
+    }
+
+    // Optional per-stage timing; inference time is split evenly across a batch's images.
+    // Must be called before start()
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Batches run in parallel on this many threads; only worth more than one when the model
+    // is an InterpreterPool, whose size it should match. Must be called before start()
+    public void setInferenceThreads(int threads) {
+        if (threads < 1 || threads > MAX_INFERENCE_THREADS) {
+            throw new IllegalArgumentException("Inference threads must be between 1 and " + MAX_INFERENCE_THREADS);
+        }
+        inferenceThreads = threads;
+    }
+
+    public void start(Iterator<T> source, int total) {
+        if (!threads.isEmpty()) {
+            throw new IllegalStateException("Pipeline already started");
+        }
+        this.source = source;
+        this.total = total;
+        // One batch per inference worker plus one being filled
+        for (int i = 0; i <= inferenceThreads; i++) {
+            freeBatches.add(new Batch<T>(model.newBatchInputBuffer(batchSize), batchSize));
+        }
+        for (int i = 0; i < decodeThreads; i++) {
+            threads.add(new Thread(this::decodeLoop, "scan-decode-" + i));
+        }
+        threads.add(new Thread(this::preprocessLoop, "scan-preprocess"));
+        for (int i = 0; i < inferenceThreads; i++) {
+            threads.add(new Thread(this::inferenceLoop, "scan-inference-" + i));
+        }
+        threads.add(new Thread(this::sinkLoop, "scan-sink"));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        if (finished.compareAndSet(false, true)) {
+            listener.onFinished(true);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void decodeLoop() {
+        try {
+            while (!cancelled) {
+                T item;
+                synchronized (this) {
+                    if (!source.hasNext()) {
+                        break;
+                    }
+                    item = source.next();
+                }
+                Decoded<T, I> entry = new Decoded<>(item);
+                float[] cached = null;
+                long time = System.nanoTime();
+                // Anything thrown here has to become an error result; a dead decode thread
+                // would never send END and every later stage would wait forever
+                try {
+                    entry.image = decoder.decode(item);
+                    if (metrics != null) {
+                        metrics.lap(PipelineMetrics.Stage.DECODE, time);
+                    }
+                    if (entry.image == null) {
+                        entry.error = new IllegalArgumentException("Could not decode " + item);
+                    } else if (cache != null) {
+                        entry.key = hasher.hash(entry.image);
+                        cached = cache.get(entry.key);
+                    }
+                } catch (Exception e) {
+                    entry.error = e;
+                }
+                if (cached != null) {
+                    recycle(entry.image);
+                    results.put(new Result<T>(item, model.toResult(cached, 0, 0), null));
+                    continue;
+                }
+                decoded.put(entry);
+            }
+            decoded.put(END);
+        } catch (InterruptedException e) {
+            // Cancelled
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void preprocessLoop() {
+        try {
+            int ended = 0;
+            Batch<T> batch = null;
+            while (ended < decodeThreads) {
+                Object next = decoded.take();
+                if (next == END) {
+                    ended++;
+                    continue;
+                }
+                Decoded<T, I> entry = (Decoded<T, I>) next;
+                if (entry.error != null) {
+                    // The image may have decoded before the hasher or the cache failed
+                    recycle(entry.image);
+                    results.put(new Result<T>(entry.item, null, entry.error));
+                    continue;
+                }
+                if (batch == null) {
+                    batch = freeBatches.take();
+                }
+                long time = System.nanoTime();
+                try {
+                    preprocessor.preprocess(entry.image, batch.input, batch.count);
+                    if (metrics != null) {
+                        metrics.lap(PipelineMetrics.Stage.PREPROCESS, time);
+                    }
+                    batch.items.add(entry.item);
+                    batch.keys.add(entry.key);
+                    batch.count++;
+                } catch (Exception e) {
+                    results.put(new Result<T>(entry.item, null, e));
+                } finally {
+                    recycle(entry.image);
+                }
+                if (batch.count == batchSize) {
+                    fullBatches.put(batch);
+                    batch = null;
+                }
+            }
+            if (batch != null && batch.count > 0) {
+                fullBatches.put(batch);
+            }
+            for (int i = 0; i < inferenceThreads; i++) {
+                fullBatches.put(END);
+            }
+        } catch (InterruptedException e) {
+            // Cancelled
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void inferenceLoop() {
+        float[] batchScores = new float[batchSize * model.getNumClasses()];
+        try {
+            while (true) {
+                Object next = fullBatches.take();
+                if (next == END) {
+                    break;
+                }
+                Batch<T> batch = (Batch<T>) next;
+                // Items before this one already have their result
+                int delivered = 0;
+                try {
+                    int numClasses = model.getNumClasses();
+                    long time = System.nanoTime();
+                    long latency = model.predictBatchInto(batch.inputFor(batch.count), batch.count, batchScores);
+                    if (metrics != null) {
+                        long perImage = (System.nanoTime() - time) / batch.count;
+                        for (int i = 0; i < batch.count; i++) {
+                            metrics.record(PipelineMetrics.Stage.INFERENCE, perImage);
+                        }
+                    }
+                    for (int i = 0; i < batch.count; i++) {
+                        String key = batch.keys.get(i);
+                        if (key != null) {
+                            cache.put(key, batchScores, i * numClasses);
+                        }
+                        time = System.nanoTime();
+                        PredictionResult prediction = model.toResult(batchScores, i * numClasses, latency);
+                        if (metrics != null) {
+                            metrics.lap(PipelineMetrics.Stage.POSTPROCESS, time);
+                        }
+                        results.put(new Result<T>(batch.items.get(i), prediction, null));
+                        delivered++;
+                    }
+                } catch (RuntimeException e) {
+                    for (int i = delivered; i < batch.count; i++) {
+                        results.put(new Result<T>(batch.items.get(i), null, e));
+                    }
+                }
+                batch.clear();
+                freeBatches.put(batch);
+            }
+            results.put(END);
+        } catch (InterruptedException e) {
+            // Cancelled
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sinkLoop() {
+        long startTime = System.nanoTime();
+        int processed = 0;
+        int failed = 0;
+        int ended = 0;
+        try {
+            while (ended < inferenceThreads) {
+                Object next = results.take();
+                if (next == END) {
+                    ended++;
+                    continue;
+                }
+                Result<T> result = (Result<T>) next;
+                if (result.error != null) {
+                    failed++;
+                    listener.onError(result.item, result.error);
+                } else {
+                    long time = System.nanoTime();
+                    listener.onResult(result.item, result.prediction);
+                    if (metrics != null) {
+                        metrics.lap(PipelineMetrics.Stage.DELIVERY, time);
+                    }
+                }
+                if (metrics != null) {
+                    metrics.onFrame();
+                }
+                processed++;
+                float seconds = (System.nanoTime() - startTime) / 1e9f;
+                listener.onProgress(processed, failed, total, seconds > 0 ? processed / seconds : 0);
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+        if (finished.compareAndSet(false, true)) {
+            listener.onFinished(false);
+        }
+    }
+
+    private void recycle(I image) {
+        if (recycler != null && image != null) {
+            recycler.recycle(image);
+        }
+    }
+
+    private static class Decoded<T, I> {
+        final T item;
+        I image;
+        String key;
+        Exception error;
+
+        Decoded(T item) {
+            this.item = item;
+        }
+    }
+
+    private static class Batch<T> {
+        final ByteBuffer input;
+        final List<T> items;
+        final List<String> keys;
+        final int capacity;
+        int count;
+
+        Batch(ByteBuffer input, int capacity) {
+            this.input = input;
+            this.items = new ArrayList<>(capacity);
+            this.keys = new ArrayList<>(capacity);
+            this.capacity = capacity;
+        }
+
+        // A short final batch runs on a view covering only the filled slots
+        ByteBuffer inputFor(int size) {
+            if (size == capacity) {
+                return input;
+            }
+            ByteBuffer view = input.duplicate();
+            view.position(0);
+            view.limit(input.capacity() / capacity * size);
+            return view.slice().order(ByteOrder.nativeOrder());
+        }
+
+        void clear() {
+            items.clear();
+            keys.clear();
+            count = 0;
+        }
+    }
+
+    private static class Result<T> {
+        final T item;
+        final PredictionResult prediction;
+        final Exception error;
+
+        Result(T item, PredictionResult prediction, Exception error) {
+            this.item = item;
+            this.prediction = prediction;
+            this.error = error;
+        }
+    }
+}
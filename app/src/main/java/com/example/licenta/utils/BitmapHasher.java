@@ -0,0 +1,21 @@
+package com.example.licenta.utils;
+
+import android.graphics.Bitmap;
+
+// Hashes a decoded Bitmap's pixels one row at a time, so no full-size int[] copy is made
+public final class BitmapHasher {
+    private BitmapHasher() {
+    }
+
+    public static String hash(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] row = new int[width];
+        ContentHasher hasher = new ContentHasher().update(width).update(height);
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            hasher.update(row, 0, width);
+        }
+        return hasher.digest();
+    }
+}
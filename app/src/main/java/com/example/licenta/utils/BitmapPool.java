@@ -0,0 +1,81 @@
+package com.example.licenta.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps mutable ARGB_8888 Bitmaps that are no longer shown or read so the next decode can draw
+ * into one of them ({@code BitmapFactory.Options.inBitmap}) or reconfigure it to a new size,
+ * instead of allocating a fresh pixel buffer for every image. Bitmaps are matched by allocation
+ * size, smallest fit first, and the pool holds at most {@code maxBytes}; the oldest are recycled
+ * beyond that.
+ */
+public final class BitmapPool {
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final long maxBytes;
+    private final List<Bitmap> bitmaps = new ArrayList<>();
+    private long bytes;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // A pooled bitmap with room for width x height pixels, or null; for use as inBitmap
+    public synchronized Bitmap poll(int width, int height) {
+        long needed = (long) width * height * BYTES_PER_PIXEL;
+        int best = -1;
+        for (int i = 0; i < bitmaps.size(); i++) {
+            int size = bitmaps.get(i).getAllocationByteCount();
+            if (size >= needed && (best < 0 || size < bitmaps.get(best).getAllocationByteCount())) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        Bitmap bitmap = bitmaps.remove(best);
+        bytes -= bitmap.getAllocationByteCount();
+        return bitmap;
+    }
+
+    // A mutable width x height bitmap, reusing a pooled one when it is large enough. Its
+    // contents are undefined; callers draw over all of it.
+    public Bitmap get(int width, int height) {
+        Bitmap bitmap = poll(width, height);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        return bitmap;
+    }
+
+    // Hands a bitmap back once nothing draws or reads it any more
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888 || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        while (bytes + size > maxBytes) {
+            Bitmap oldest = bitmaps.remove(0);
+            bytes -= oldest.getAllocationByteCount();
+            oldest.recycle();
+        }
+        bitmaps.add(bitmap);
+        bytes += size;
+    }
+
+    public synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        bytes = 0;
+    }
+}
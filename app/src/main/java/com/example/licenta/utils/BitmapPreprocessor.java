@@ -0,0 +1,50 @@
+package com.example.licenta.utils;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Feeds Bitmaps through an {@link ImagePreprocessor}, reusing one pixel array across calls.
+ * The array comes from {@link ArrayPool#SHARED} and goes back there on {@link #release()}.
+ * Keep one instance per worker thread; only release() may be called from another thread.
+ * It waits for a preprocess in progress, so the array is never pooled while being written.
+ */
+public class BitmapPreprocessor {
+    private static final int[] EMPTY = new int[0];
+
+    private final ImagePreprocessor preprocessor;
+    private int[] pixels = EMPTY;
+
+    public BitmapPreprocessor(ImagePreprocessor preprocessor) {
+        this.preprocessor = preprocessor;
+    }
+
+    public ImagePreprocessor getImagePreprocessor() {
+        return preprocessor;
+    }
+
+    public void preprocess(Bitmap bitmap, ByteBuffer out) {
+        preprocess(bitmap, out, 0);
+    }
+
+    // Writes image number imageIndex of a batch input buffer
+    public synchronized void preprocess(Bitmap bitmap, ByteBuffer out, int imageIndex) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (pixels.length < width * height) {
+            release();
+            pixels = ArrayPool.SHARED.getInts(width * height);
+        }
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        preprocessor.preprocess(pixels, width, height, out, imageIndex);
+    }
+
+    // Returns the pixel array to the pool; the preprocessor can still be used afterwards
+    public synchronized void release() {
+        if (pixels != EMPTY) {
+            ArrayPool.SHARED.put(pixels);
+            pixels = EMPTY;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An image classifier fed with tensors built by its own {@link ImagePreprocessor}.
+ * {@link TFLiteModel} is the real implementation; {@link FakeClassifier} stands in for it in
+ * JVM tests and benchmarks, where there is no device and no model file.
+ */
+public interface Classifier {
+    // Native-order direct buffer matching one input tensor
+    ByteBuffer newInputBuffer();
+
+    // Buffer holding batchSize consecutive input tensors
+    ByteBuffer newBatchInputBuffer(int batchSize);
+
+    // Preprocessor producing tensors in this classifier's input size, layout and type
+    ImagePreprocessor newPreprocessor();
+
+    int getInputWidth();
+
+    int getInputHeight();
+
+    int getNumClasses();
+
+    // Name of class classIndex, or null if the labels file has no entry for it
+    String getLabel(int classIndex);
+
+    // Identifies the weights, so cached scores are only reused by the classifier that made them
+    String getModelVersion();
+
+    // Human-readable backend, for logs and exported metrics
+    String getDescription();
+
+    PredictionResult predict(ByteBuffer input);
+
+    // Writes numClasses scores into scoresOut without allocating; returns the latency in ms
+    long predictInto(ByteBuffer input, float[] scoresOut);
+
+    PredictionResult[] predictBatch(ByteBuffer input, int batchSize);
+
+    // Scores for image i start at scoresOut[i * numClasses]; returns the batch latency in ms
+    long predictBatchInto(ByteBuffer input, int batchSize, float[] scoresOut);
+
+    // Builds a result from numClasses scores starting at offset
+    PredictionResult toResult(float[] scores, int offset, long latency);
+
+    void close();
+}
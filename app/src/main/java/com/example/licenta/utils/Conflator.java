@@ -0,0 +1,66 @@
+package com.example.licenta.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Passes only the newest of a stream of values from a producer thread to a consumer. At most
+ * one value waits at a time: offering another replaces it, and the replaced one goes to the
+ * {@link Recycler} so pooled values find their way back. At most one delivery is scheduled at a
+ * time too, however fast values arrive, so the consumer's queue never grows. Offering neither
+ * locks nor allocates.
+ */
+public class Conflator<T> {
+
+    public interface Consumer<T> {
+        void accept(T value);
+    }
+
+    public interface Recycler<T> {
+        // Called on the producer thread with a value that was replaced before delivery
+        void recycle(T value);
+    }
+
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong conflated = new AtomicLong();
+    private final Executor delivery;
+    private final Consumer<T> consumer;
+    private final Recycler<T> recycler;
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            // Cleared first, so a value offered from here on schedules its own delivery
+            scheduled.set(false);
+            T value = pending.getAndSet(null);
+            if (value != null) {
+                consumer.accept(value);
+            }
+        }
+    };
+
+    // delivery decides when the consumer runs, e.g. on the next display frame
+    public Conflator(Executor delivery, Consumer<T> consumer, Recycler<T> recycler) {
+        this.delivery = delivery;
+        this.consumer = consumer;
+        this.recycler = recycler;
+    }
+
+    public void offer(T value) {
+        T replaced = pending.getAndSet(value);
+        if (replaced != null) {
+            conflated.incrementAndGet();
+            recycler.recycle(replaced);
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            delivery.execute(drain);
+        }
+    }
+
+    // Values replaced by a newer one before they could be delivered
+    public long getConflated() {
+        return conflated.get();
+    }
+}
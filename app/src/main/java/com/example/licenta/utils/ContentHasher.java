@@ -0,0 +1,97 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming 128-bit non-cryptographic hash (MurmurHash3-style mixing over 32-bit words) used
+ * to key cached predictions by image content. Not thread-safe; use one instance per thread.
+ */
+public final class ContentHasher {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private long h1;
+    private long h2;
+    private long length;
+
+    public ContentHasher() {
+        reset();
+    }
+
+    public ContentHasher reset() {
+        h1 = 0x9368e53c2f6af274L;
+        h2 = 0x586dcd208f7cd3fdL;
+        length = 0;
+        return this;
+    }
+
+    public ContentHasher update(int value) {
+        long k = value & 0xFFFFFFFFL;
+
+        long k1 = Long.rotateLeft(k * C1, 31) * C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27) * 5 + 0x52dce729;
+
+        long k2 = Long.rotateLeft(k * C2, 33) * C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31) * 5 + 0x38495ab5;
+
+        length++;
+        return this;
+    }
+
+    public ContentHasher update(int[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            update(values[i]);
+        }
+        return this;
+    }
+
+    // Hashes the buffer's remaining bytes without changing its position
+    public ContentHasher update(ByteBuffer buffer) {
+        int position = buffer.position();
+        int end = buffer.limit();
+        int i = position;
+        for (; i + 4 <= end; i += 4) {
+            update(buffer.getInt(i));
+        }
+        for (; i < end; i++) {
+            update(buffer.get(i));
+        }
+        return this;
+    }
+
+    // Finishes the hash and returns it as 32 hex characters; call reset() before reusing
+    public String digest() {
+        long a = h1 ^ length;
+        long b = h2 ^ length;
+        a += b;
+        b += a;
+        a = fmix(a);
+        b = fmix(b);
+        a += b;
+        b += a;
+
+        char[] out = new char[32];
+        writeHex(a, out, 0);
+        writeHex(b, out, 16);
+        return new String(out);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static void writeHex(long value, char[] out, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deterministic stand-in for {@link TFLiteModel} that runs on a plain JVM. The predicted class
+ * is derived from a checksum of the input tensor, so the same image always gets the same
+ * scores, and each run blocks for {@code fixedLatencyNanos + perImageLatencyNanos * batchSize}
+ * to imitate an interpreter whose fixed per-run cost is amortized over a batch. Like the real
+ * model, one run happens at a time.
+ */
+public class FakeClassifier implements Classifier {
+    // Share of the probability mass given to the predicted class
+    private static final float TOP_SCORE = 0.7f;
+
+    private final int width;
+    private final int height;
+    private final String[] labels;
+    private final boolean quantized;
+    private final long fixedLatencyNanos;
+    private final long perImageLatencyNanos;
+    private final int inputBytes;
+    private final float[] scores;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong imagesClassified = new AtomicLong();
+
+    public FakeClassifier(int width, int height, String[] labels, boolean quantized,
+                          long fixedLatencyNanos, long perImageLatencyNanos) {
+        this.width = width;
+        this.height = height;
+        this.labels = labels;
+        this.quantized = quantized;
+        this.fixedLatencyNanos = fixedLatencyNanos;
+        this.perImageLatencyNanos = perImageLatencyNanos;
+        inputBytes = newPreprocessor().getInputBytes();
+        scores = new float[labels.length];
+    }
+
+    @Override
+    public ByteBuffer newInputBuffer() {
+        return newBatchInputBuffer(1);
+    }
+
+    @Override
+    public ByteBuffer newBatchInputBuffer(int batchSize) {
+        return ByteBuffer.allocateDirect(inputBytes * batchSize).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public ImagePreprocessor newPreprocessor() {
+        return quantized ? ImagePreprocessor.quantized(width, height, false, 1 / 255.0f, 0)
+                : new ImagePreprocessor(width, height);
+    }
+
+    @Override
+    public int getInputWidth() {
+        return width;
+    }
+
+    @Override
+    public int getInputHeight() {
+        return height;
+    }
+
+    @Override
+    public int getNumClasses() {
+        return labels.length;
+    }
+
+    @Override
+    public String getLabel(int classIndex) {
+        return labels[classIndex];
+    }
+
+    @Override
+    public String getModelVersion() {
+        return "fake-" + width + "x" + height + "-" + labels.length + (quantized ? "-q" : "");
+    }
+
+    @Override
+    public String getDescription() {
+        return "Fake (" + fixedLatencyNanos / 1000 + " us + " + perImageLatencyNanos / 1000 + " us/image)";
+    }
+
+    // Number of interpreter-equivalent runs so far; a batch counts once
+    public long getRuns() {
+        return runs.get();
+    }
+
+    public long getImagesClassified() {
+        return imagesClassified.get();
+    }
+
+    @Override
+    public synchronized PredictionResult predict(ByteBuffer input) {
+        long latency = predictInto(input, scores);
+        return toResult(scores, 0, latency);
+    }
+
+    @Override
+    public synchronized long predictInto(ByteBuffer input, float[] scoresOut) {
+        return predictBatchInto(input, 1, scoresOut);
+    }
+
+    @Override
+    public synchronized PredictionResult[] predictBatch(ByteBuffer input, int batchSize) {
+        float[] batchScores = new float[labels.length * batchSize];
+        long latency = predictBatchInto(input, batchSize, batchScores);
+        PredictionResult[] results = new PredictionResult[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            results[i] = toResult(batchScores, i * labels.length, latency);
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized long predictBatchInto(ByteBuffer input, int batchSize, float[] scoresOut) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (input.capacity() != inputBytes * batchSize) {
+            throw new IllegalArgumentException("Expected an input buffer of " + inputBytes * batchSize
+                    + " bytes, got " + input.capacity());
+        }
+        long startTime = System.nanoTime();
+        int numClasses = labels.length;
+        for (int image = 0; image < batchSize; image++) {
+            int predicted = Math.floorMod(checksum(input, image * inputBytes), numClasses);
+            float rest = numClasses > 1 ? (1 - TOP_SCORE) / (numClasses - 1) : 0;
+            for (int c = 0; c < numClasses; c++) {
+                scoresOut[image * numClasses + c] = c == predicted ? (numClasses > 1 ? TOP_SCORE : 1) : rest;
+            }
+        }
+        long remaining = fixedLatencyNanos + perImageLatencyNanos * batchSize - (System.nanoTime() - startTime);
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            remaining = fixedLatencyNanos + perImageLatencyNanos * batchSize - (System.nanoTime() - startTime);
+        }
+        runs.incrementAndGet();
+        imagesClassified.addAndGet(batchSize);
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    @Override
+    public PredictionResult toResult(float[] scores, int offset, long latency) {
+        float[] copy = new float[labels.length];
+        System.arraycopy(scores, offset, copy, 0, labels.length);
+        return new PredictionResult(copy, labels, latency);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Sparse sample of the tensor's bytes; enough to tell synthetic images apart
+    private int checksum(ByteBuffer input, int offset) {
+        int sum = 0;
+        for (int i = 0; i < inputBytes; i += 61) {
+            sum = 31 * sum + input.get(offset + i);
+        }
+        return sum;
+    }
+}
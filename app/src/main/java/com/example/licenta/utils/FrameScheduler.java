@@ -0,0 +1,56 @@
+package com.example.licenta.utils;
+
+/**
+ * Decides when the live camera analyzer should run the next inference. The interval follows
+ * the measured inference latency so that inference only takes up {@code dutyCycle} of the
+ * wall-clock time, capped at {@code maxFps}. Times are in nanoseconds (System.nanoTime()).
+ */
+public class FrameScheduler {
+    // Weight of the newest latency sample in the moving average
+    private static final float SMOOTHING = 0.2f;
+
+    private final float dutyCycle;
+    private final long maxStaleNanos;
+    private long minIntervalNanos;
+    private float averageLatencyNanos;
+    private long lastRunNanos;
+    private boolean hasRun;
+
+    public FrameScheduler(float dutyCycle, float maxFps, long maxStaleMillis) {
+        if (dutyCycle <= 0 || dutyCycle > 1) {
+            throw new IllegalArgumentException("dutyCycle must be in (0, 1]");
+        }
+        this.dutyCycle = dutyCycle;
+        this.maxStaleNanos = maxStaleMillis * 1_000_000L;
+        setMaxFps(maxFps);
+    }
+
+    public synchronized void setMaxFps(float maxFps) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("maxFps must be positive");
+        }
+        minIntervalNanos = (long) (1e9 / maxFps);
+    }
+
+    // True once enough time has passed since the last inference to stay within the budget
+    public synchronized boolean isDue(long nowNanos) {
+        return !hasRun || nowNanos - lastRunNanos >= getIntervalNanos();
+    }
+
+    // True when the last result is old enough that it should be refreshed even for a still scene
+    public synchronized boolean isStale(long nowNanos) {
+        return !hasRun || nowNanos - lastRunNanos >= maxStaleNanos;
+    }
+
+    public synchronized void onInference(long startNanos, long latencyNanos) {
+        averageLatencyNanos = hasRun
+                ? averageLatencyNanos + SMOOTHING * (latencyNanos - averageLatencyNanos)
+                : latencyNanos;
+        lastRunNanos = startNanos;
+        hasRun = true;
+    }
+
+    public synchronized long getIntervalNanos() {
+        return Math.max(minIntervalNanos, (long) (averageLatencyNanos / dutyCycle));
+    }
+}
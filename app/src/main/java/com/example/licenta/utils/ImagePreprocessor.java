@@ -0,0 +1,178 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Resizes ARGB pixels to the model's input size and normalizes them into an input
+ * tensor buffer in a single pass. Float models get values in [0, 1]; quantized models get
+ * those values already quantized with the tensor's scale and zero-point, which for the usual
+ * scale of 1/255 means the raw 0-255 pixel. Bilinear sampling tables are kept between calls and
+ * only rebuilt when the source (or region) size changes. This class has no Android dependencies
+ * so it can be exercised on a plain JVM; see {@link BitmapPreprocessor} for the Bitmap adapter.
+ */
+public class ImagePreprocessor {
+    private static final float NORMALIZE = 1 / 255.0f;
+    private static final int CHANNELS = 3;
+
+    private final int width;
+    private final int height;
+    // Maps a 0-255 channel value to its quantized byte; null for float input
+    private final byte[] quantized;
+
+    // Bilinear taps and 8-bit weights for every output column and row
+    private final int[] x0;
+    private final int[] x1;
+    private final int[] xWeight;
+    private final int[] y0;
+    private final int[] y1;
+    private final int[] yWeight;
+    private int tableSourceWidth = -1;
+    private int tableSourceHeight = -1;
+
+    public ImagePreprocessor(int width, int height) {
+        this(width, height, null);
+    }
+
+    private ImagePreprocessor(int width, int height, byte[] quantized) {
+        this.width = width;
+        this.height = height;
+        this.quantized = quantized;
+        x0 = new int[width];
+        x1 = new int[width];
+        xWeight = new int[width];
+        y0 = new int[height];
+        y1 = new int[height];
+        yWeight = new int[height];
+    }
+
+    /**
+     * Preprocessor for a uint8 or int8 input tensor with the given quantization parameters.
+     * A scale of 0 means the tensor carries no parameters and takes raw pixels.
+     */
+    public static ImagePreprocessor quantized(int width, int height, boolean signed, float scale, int zeroPoint) {
+        int min = signed ? -128 : 0;
+        int max = signed ? 127 : 255;
+        byte[] table = new byte[256];
+        for (int value = 0; value < 256; value++) {
+            int q;
+            if (scale == 0) {
+                q = value + min;
+            } else {
+                q = Math.round(value / 255.0f / scale) + zeroPoint;
+            }
+            table[value] = (byte) Math.max(min, Math.min(max, q));
+        }
+        return new ImagePreprocessor(width, height, table);
+    }
+
+    public boolean isQuantized() {
+        return quantized != null;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getInputBytes() {
+        return width * height * CHANNELS * (quantized == null ? 4 : 1);
+    }
+
+    public ByteBuffer newInputBuffer() {
+        return ByteBuffer.allocateDirect(getInputBytes()).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Scales {@code argb} ({@code srcWidth} x {@code srcHeight}, row-major) to the input size
+     * and writes the normalized RGB values into {@code out} starting at index 0.
+     */
+    public void preprocess(int[] argb, int srcWidth, int srcHeight, ByteBuffer out) {
+        preprocess(argb, srcWidth, srcHeight, out, 0);
+    }
+
+    /**
+     * Same as {@link #preprocess(int[], int, int, ByteBuffer)} but writes image number
+     * {@code imageIndex} of a batch buffer holding consecutive input images.
+     */
+    public void preprocess(int[] argb, int srcWidth, int srcHeight, ByteBuffer out, int imageIndex) {
+        preprocessRegion(argb, srcWidth, srcHeight, 0, 0, srcWidth, srcHeight, out, imageIndex);
+    }
+
+    /**
+     * Scales only the {@code regionWidth} x {@code regionHeight} rectangle at ({@code left},
+     * {@code top}) of the source to the input size, e.g. one tile of a larger photo, and writes
+     * it as image number {@code imageIndex} of {@code out}.
+     */
+    public void preprocessRegion(int[] argb, int srcWidth, int srcHeight, int left, int top,
+                                 int regionWidth, int regionHeight, ByteBuffer out, int imageIndex) {
+        if (argb.length < srcWidth * srcHeight) {
+            throw new IllegalArgumentException("Pixel array is smaller than " + srcWidth + "x" + srcHeight);
+        }
+        if (left < 0 || top < 0 || regionWidth < 1 || regionHeight < 1
+                || left + regionWidth > srcWidth || top + regionHeight > srcHeight) {
+            throw new IllegalArgumentException("Region is outside the " + srcWidth + "x" + srcHeight + " image");
+        }
+        if (regionWidth != tableSourceWidth || regionHeight != tableSourceHeight) {
+            buildTable(regionWidth, width, x0, x1, xWeight);
+            buildTable(regionHeight, height, y0, y1, yWeight);
+            tableSourceWidth = regionWidth;
+            tableSourceHeight = regionHeight;
+        }
+
+        int base = imageIndex * width * height;
+        for (int oy = 0; oy < height; oy++) {
+            int row0 = (top + y0[oy]) * srcWidth + left;
+            int row1 = (top + y1[oy]) * srcWidth + left;
+            int wy = yWeight[oy];
+            for (int ox = 0; ox < width; ox++) {
+                int wx = xWeight[ox];
+                int p00 = argb[row0 + x0[ox]];
+                int p01 = argb[row0 + x1[ox]];
+                int p10 = argb[row1 + x0[ox]];
+                int p11 = argb[row1 + x1[ox]];
+
+                int r = lerp(p00 >> 16 & 0xFF, p01 >> 16 & 0xFF, p10 >> 16 & 0xFF, p11 >> 16 & 0xFF, wx, wy);
+                int g = lerp(p00 >> 8 & 0xFF, p01 >> 8 & 0xFF, p10 >> 8 & 0xFF, p11 >> 8 & 0xFF, wx, wy);
+                int b = lerp(p00 & 0xFF, p01 & 0xFF, p10 & 0xFF, p11 & 0xFF, wx, wy);
+                writePixel(out, base + oy * width + ox, r, g, b);
+            }
+        }
+    }
+
+    // Shared with YuvToTensorConverter so both paths produce the same tensor layout
+    void writePixel(ByteBuffer out, int pixelIndex, int r, int g, int b) {
+        if (quantized != null) {
+            int index = pixelIndex * CHANNELS;
+            out.put(index, quantized[r]);
+            out.put(index + 1, quantized[g]);
+            out.put(index + 2, quantized[b]);
+            return;
+        }
+        int index = pixelIndex * CHANNELS * 4;
+        out.putFloat(index, r * NORMALIZE);
+        out.putFloat(index + 4, g * NORMALIZE);
+        out.putFloat(index + 8, b * NORMALIZE);
+    }
+
+    // Maps output pixel centers onto the source, matching Bitmap.createScaledBitmap's filtering
+    private static void buildTable(int srcSize, int dstSize, int[] index0, int[] index1, int[] weight) {
+        float scale = srcSize / (float) dstSize;
+        for (int i = 0; i < dstSize; i++) {
+            float position = Math.max(0f, (i + 0.5f) * scale - 0.5f);
+            int lower = Math.min((int) position, srcSize - 1);
+            index0[i] = lower;
+            index1[i] = Math.min(lower + 1, srcSize - 1);
+            weight[i] = (int) ((position - lower) * 256 + 0.5f);
+        }
+    }
+
+    private static int lerp(int c00, int c01, int c10, int c11, int wx, int wy) {
+        int top = c00 * (256 - wx) + c01 * wx;
+        int bottom = c10 * (256 - wx) + c11 * wx;
+        return (top * (256 - wy) + bottom * wy + (1 << 15)) >> 16;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed set of classifiers, usually {@link TFLiteModel} copies sharing one mapped model file,
+ * that several threads can run at once. Members are checked out with {@link #borrow()} and
+ * handed back with {@link #release}; a semaphore counts the free members and each thread
+ * claims one with a compare-and-set on its own stripe of slots, so checkout takes no lock.
+ * The pool is itself a {@link Classifier} that runs each call on whichever member is free.
+ */
+public class InterpreterPool implements Classifier {
+    private final Classifier[] members;
+    private final AtomicReferenceArray<Classifier> slots;
+    private final Semaphore available;
+
+    public InterpreterPool(List<? extends Classifier> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("The pool needs at least one classifier");
+        }
+        this.members = members.toArray(new Classifier[0]);
+        slots = new AtomicReferenceArray<>(this.members);
+        available = new Semaphore(this.members.length);
+    }
+
+    // Interpreters worth running side by side when each uses threadsPerInterpreter threads,
+    // so that together they keep every core busy without oversubscribing it
+    public static int recommendedSize(int cores, int threadsPerInterpreter) {
+        return Math.max(1, cores / Math.max(1, threadsPerInterpreter));
+    }
+
+    public int size() {
+        return members.length;
+    }
+
+    public int availableCount() {
+        return available.availablePermits();
+    }
+
+    // Blocks until a member is free; hand it back with release() when done
+    public Classifier borrow() throws InterruptedException {
+        available.acquire();
+        return claim();
+    }
+
+    // Returns null instead of waiting when every member is busy
+    public Classifier tryBorrow() {
+        return available.tryAcquire() ? claim() : null;
+    }
+
+    public void release(Classifier member) {
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] == member) {
+                if (!slots.compareAndSet(i, null, member)) {
+                    throw new IllegalStateException("Classifier released twice");
+                }
+                available.release();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Classifier does not belong to this pool");
+    }
+
+    // A permit guarantees a filled slot; start at a per-thread offset so threads rarely collide
+    private Classifier claim() {
+        int start = (int) (Thread.currentThread().getId() % members.length);
+        while (true) {
+            for (int i = 0; i < members.length; i++) {
+                int slot = (start + i) % members.length;
+                Classifier member = slots.get(slot);
+                if (member != null && slots.compareAndSet(slot, member, null)) {
+                    return member;
+                }
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer newInputBuffer() {
+        return members[0].newInputBuffer();
+    }
+
+    @Override
+    public ByteBuffer newBatchInputBuffer(int batchSize) {
+        return members[0].newBatchInputBuffer(batchSize);
+    }
+
+    @Override
+    public ImagePreprocessor newPreprocessor() {
+        return members[0].newPreprocessor();
+    }
+
+    @Override
+    public int getInputWidth() {
+        return members[0].getInputWidth();
+    }
+
+    @Override
+    public int getInputHeight() {
+        return members[0].getInputHeight();
+    }
+
+    @Override
+    public int getNumClasses() {
+        return members[0].getNumClasses();
+    }
+
+    @Override
+    public String getLabel(int classIndex) {
+        return members[0].getLabel(classIndex);
+    }
+
+    @Override
+    public String getModelVersion() {
+        return members[0].getModelVersion();
+    }
+
+    @Override
+    public String getDescription() {
+        return members.length + " x " + members[0].getDescription();
+    }
+
+    @Override
+    public PredictionResult predict(ByteBuffer input) {
+        available.acquireUninterruptibly();
+        Classifier member = claim();
+        try {
+            return member.predict(input);
+        } finally {
+            release(member);
+        }
+    }
+
+    @Override
+    public long predictInto(ByteBuffer input, float[] scoresOut) {
+        available.acquireUninterruptibly();
+        Classifier member = claim();
+        try {
+            return member.predictInto(input, scoresOut);
+        } finally {
+            release(member);
+        }
+    }
+
+    @Override
+    public PredictionResult[] predictBatch(ByteBuffer input, int batchSize) {
+        available.acquireUninterruptibly();
+        Classifier member = claim();
+        try {
+            return member.predictBatch(input, batchSize);
+        } finally {
+            release(member);
+        }
+    }
+
+    @Override
+    public long predictBatchInto(ByteBuffer input, int batchSize, float[] scoresOut) {
+        available.acquireUninterruptibly();
+        Classifier member = claim();
+        try {
+            return member.predictBatchInto(input, batchSize, scoresOut);
+        } finally {
+            release(member);
+        }
+    }
+
+    @Override
+    public PredictionResult toResult(float[] scores, int offset, long latency) {
+        return members[0].toResult(scores, offset, latency);
+    }
+
+    // Closes every member; callers must have stopped using the pool
+    @Override
+    public void close() {
+        for (Classifier member : members) {
+            member.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cheap first stage in front of the classifier: does the frame show enough leaf to be worth
+ * classifying? A coarse grid over the center square of a YUV_420_888 frame is tested with the
+ * excess-green vegetation index (2G - R - B), which stays positive for green and yellowed
+ * leaves but not for soil, skin or sky. The frame passes when at least {@code minLeafFraction}
+ * of the samples are vegetation. For BT.601 the index only depends on chroma, so each sample
+ * costs one luma and two chroma reads and no color conversion.
+ */
+public class LeafGate {
+    // Chroma is too noisy in near-black pixels and washed out in clipped ones
+    private static final int MIN_LUMA = 24;
+    private static final int MAX_LUMA = 240;
+
+    private final int gridSize;
+    private final int minGreenness;
+    private final float minLeafFraction;
+
+    // gridSize samples per side; minGreenness is the smallest 2G - R - B, in 0-255 levels,
+    // that counts as vegetation
+    public LeafGate(int gridSize, int minGreenness, float minLeafFraction) {
+        this.gridSize = gridSize;
+        this.minGreenness = minGreenness;
+        this.minLeafFraction = minLeafFraction;
+    }
+
+    public boolean accepts(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane, int width, int height,
+                           int yRowStride, int uvRowStride, int uvPixelStride) {
+        // Same center square the classifier sees, whatever the rotation
+        int size = Math.min(width, height);
+        int left = (width - size) / 2;
+        int top = (height - size) / 2;
+        int leaf = 0;
+        for (int gy = 0; gy < gridSize; gy++) {
+            int sy = top + (int) ((gy + 0.5f) * size / gridSize);
+            for (int gx = 0; gx < gridSize; gx++) {
+                int sx = left + (int) ((gx + 0.5f) * size / gridSize);
+                int y = yPlane.get(sy * yRowStride + sx) & 0xFF;
+                if (y < MIN_LUMA || y > MAX_LUMA) {
+                    continue;
+                }
+                int uvOffset = (sy >> 1) * uvRowStride + (sx >> 1) * uvPixelStride;
+                if (greenness((uPlane.get(uvOffset) & 0xFF) - 128, (vPlane.get(uvOffset) & 0xFF) - 128) >= minGreenness) {
+                    leaf++;
+                }
+            }
+        }
+        return leaf >= minLeafFraction * gridSize * gridSize;
+    }
+
+    // 2G - R - B with the converter's BT.601 coefficients; the luma terms cancel out
+    static int greenness(int u, int v) {
+        return -((2519 * u + 2898 * v) >> 10);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.licenta.utils;
+
+import android.content.Context;
+import android.os.Build;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+// Writes the camera and gallery metrics to a CSV file in the app's external files directory,
+// with the device and backend in comment lines so files from different phones can be compared
+public final class MetricsExporter {
+    private MetricsExporter() {
+    }
+
+    // Call off the main thread; returns the file that was written
+    public static File export(Context context, String backend) throws IOException {
+        File directory = new File(context.getExternalFilesDir(null), "metrics");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, "metrics-" + System.currentTimeMillis() + ".csv");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# device: " + Build.MANUFACTURER + " " + Build.MODEL + ", API " + Build.VERSION.SDK_INT + "\n");
+            writer.write("# backend: " + backend + "\n");
+            // Both are -1 until the model has loaded in this process
+            ModelRegistry registry = ModelRegistry.getInstance(context);
+            writer.write("# model: cold load " + registry.getColdLoadMs() + " ms, warm-up "
+                    + registry.getWarmUpMs() + " ms\n");
+            writer.write(String.format(Locale.US, "# camera gate: skip rate %.3f, compute share %.3f\n",
+                    PipelineMetrics.CAMERA.getGateSkipRate(), PipelineMetrics.CAMERA.getGateCostShare()));
+            PipelineMetrics.writeCsvHeader(writer);
+            PipelineMetrics.CAMERA.writeCsv(writer);
+            PipelineMetrics.GALLERY.writeCsv(writer);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.licenta.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares model variants on one fixed set of images. Each variant is loaded cold, warmed up,
+ * then timed over at least {@code minTimedRuns} single-image inferences; the result holds the
+ * cold-load time, warm latency percentiles, throughput, the peak memory reported by a
+ * {@link MemoryProbe} above what was in use before the load, and the top label per image.
+ * Agreement is the share of images on which a variant's label matches the first variant that
+ * loaded. Variants run one at a time and are closed before the next one is loaded.
+ */
+public class ModelBenchmark {
+
+    public interface Loader {
+        Classifier load() throws IOException;
+    }
+
+    public interface MemoryProbe {
+        long usedBytes();
+    }
+
+    public interface Listener {
+        // Called on the benchmark thread after each variant
+        void onVariantFinished(Result result, int finished, int total);
+    }
+
+    public static class Variant {
+        public final String name;
+        final Loader loader;
+
+        public Variant(String name, Loader loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+    }
+
+    // Decoded ARGB pixels; each variant resizes them to its own input
+    public static class Image {
+        public final String name;
+        final int[] pixels;
+        final int width;
+        final int height;
+
+        public Image(String name, int[] pixels, int width, int height) {
+            this.name = name;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public static class Result {
+        public final String name;
+        public String description;
+        // Set instead of the measurements when the variant could not be loaded or run
+        public String error;
+        public long coldLoadNanos;
+        public long meanNanos;
+        public long p50Nanos;
+        public long p90Nanos;
+        public long p99Nanos;
+        public double imagesPerSecond;
+        public long peakMemoryBytes;
+        public String[] labels;
+        public float agreement;
+
+        Result(String name) {
+            this.name = name;
+        }
+    }
+
+    private final int warmUpRuns;
+    private final int minTimedRuns;
+    private final MemoryProbe memoryProbe;
+
+    public ModelBenchmark(int warmUpRuns, int minTimedRuns, MemoryProbe memoryProbe) {
+        this.warmUpRuns = warmUpRuns;
+        this.minTimedRuns = minTimedRuns;
+        this.memoryProbe = memoryProbe;
+    }
+
+    // Blocks for as long as the variants take; stops between variants when interrupted
+    public List<Result> run(List<Variant> variants, List<Image> images, Listener listener) {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("The benchmark needs at least one image");
+        }
+        List<Result> results = new ArrayList<>(variants.size());
+        String[] reference = null;
+        for (Variant variant : variants) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            Result result = new Result(variant.name);
+            try {
+                measure(variant, images, result);
+                if (reference == null) {
+                    reference = result.labels;
+                }
+                result.agreement = agreement(reference, result.labels);
+            } catch (Exception e) {
+                result.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+            results.add(result);
+            if (listener != null) {
+                listener.onVariantFinished(result, results.size(), variants.size());
+            }
+        }
+        return results;
+    }
+
+    private void measure(Variant variant, List<Image> images, Result result) throws IOException {
+        long baseline = memoryProbe.usedBytes();
+        long peak = baseline;
+        long start = System.nanoTime();
+        Classifier model = variant.loader.load();
+        result.coldLoadNanos = System.nanoTime() - start;
+        try {
+            result.description = model.getDescription();
+            peak = Math.max(peak, memoryProbe.usedBytes());
+
+            // Preprocessing is the same work for every variant, so it stays out of the timings
+            ImagePreprocessor preprocessor = model.newPreprocessor();
+            ByteBuffer[] inputs = new ByteBuffer[images.size()];
+            for (int i = 0; i < inputs.length; i++) {
+                Image image = images.get(i);
+                inputs[i] = model.newInputBuffer();
+                preprocessor.preprocess(image.pixels, image.width, image.height, inputs[i]);
+            }
+            float[] scores = new float[model.getNumClasses()];
+            result.labels = new String[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                model.predictInto(inputs[i], scores);
+                result.labels[i] = model.getLabel(PredictionResult.argMax(scores, 0, scores.length));
+            }
+            for (int run = 0; run < warmUpRuns; run++) {
+                model.predictInto(inputs[run % inputs.length], scores);
+            }
+            peak = Math.max(peak, memoryProbe.usedBytes());
+
+            LatencyHistogram latency = new LatencyHistogram();
+            int rounds = (minTimedRuns + inputs.length - 1) / inputs.length;
+            long timedNanos = 0;
+            for (int round = 0; round < Math.max(1, rounds); round++) {
+                for (ByteBuffer input : inputs) {
+                    long runStart = System.nanoTime();
+                    model.predictInto(input, scores);
+                    long nanos = System.nanoTime() - runStart;
+                    latency.record(nanos);
+                    timedNanos += nanos;
+                }
+                peak = Math.max(peak, memoryProbe.usedBytes());
+            }
+            result.meanNanos = latency.getMeanNanos();
+            result.p50Nanos = latency.getPercentileNanos(0.5);
+            result.p90Nanos = latency.getPercentileNanos(0.9);
+            result.p99Nanos = latency.getPercentileNanos(0.99);
+            result.imagesPerSecond = timedNanos > 0 ? latency.getCount() * 1e9 / timedNanos : 0;
+            result.peakMemoryBytes = peak - baseline;
+        } finally {
+            model.close();
+        }
+    }
+
+    static float agreement(String[] reference, String[] labels) {
+        int same = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(reference[i])) {
+                same++;
+            }
+        }
+        return labels.length == 0 ? 0 : same / (float) labels.length;
+    }
+
+    // One block per variant, for the benchmark screen
+    public static String summary(List<Result> results) {
+        StringBuilder text = new StringBuilder();
+        for (Result result : results) {
+            text.append(result.name).append('\n');
+            if (result.error != null) {
+                text.append("  failed: ").append(result.error).append("\n\n");
+                continue;
+            }
+            text.append(String.format(Locale.US,
+                    "  load %.1f ms\n  p50 %.1f / p90 %.1f / p99 %.1f ms\n  %.1f images/s, peak %.1f MB\n  agreement %.0f%%\n\n",
+                    result.coldLoadNanos / 1e6, result.p50Nanos / 1e6, result.p90Nanos / 1e6,
+                    result.p99Nanos / 1e6, result.imagesPerSecond, result.peakMemoryBytes / 1048576.0,
+                    result.agreement * 100));
+        }
+        return text.toString().trim();
+    }
+
+    public static void writeCsv(List<Result> results, Writer writer) throws IOException {
+        writer.write("variant,description,error,cold_load_ms,mean_ms,p50_ms,p90_ms,p99_ms,images_per_s,peak_memory_bytes,agreement\n");
+        for (Result result : results) {
+            writer.write(String.format(Locale.US, "%s,%s,%s,%.3f,%.3f,%.3f,%.3f,%.3f,%.2f,%d,%.3f\n",
+                    csv(result.name), csv(result.description), csv(result.error),
+                    result.coldLoadNanos / 1e6, result.meanNanos / 1e6, result.p50Nanos / 1e6,
+                    result.p90Nanos / 1e6, result.p99Nanos / 1e6, result.imagesPerSecond,
+                    result.peakMemoryBytes, result.agreement));
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.licenta.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the classifier. The model is loaded and warmed up once on a
+ * background thread; fragments take reference-counted handles instead of building
+ * their own interpreter every time they are created.
+ */
+public final class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+    private static final int CACHE_MEMORY_ENTRIES = 256;
+    private static final long CACHE_DISK_BYTES = 1024 * 1024;
+    // Interpreter threads per pool member, and the most members worth their tensor memory
+    private static final int POOL_THREADS_PER_INTERPRETER = 2;
+    private static final int POOL_MAX_SIZE = 4;
+    private static ModelRegistry instance;
+
+    private final Context appContext;
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Handle> pendingHandles = new ArrayList<>();
+
+    private TFLiteModel model;
+    private Exception loadError;
+    private boolean loading;
+    private int refCount;
+    private long coldLoadMs = -1;
+    private long warmUpMs = -1;
+    private InterpreterPool interpreterPool;
+    private PredictionCache predictionCache;
+    private String predictionCacheVersion;
+
+    public interface Listener {
+        void onModelReady(Classifier model);
+
+        void onModelError(Exception error);
+    }
+
+    private ModelRegistry(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    public static synchronized ModelRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new ModelRegistry(context);
+        }
+        return instance;
+    }
+
+    // Starts loading the model without taking a reference, e.g. while the home screen is shown
+    public synchronized void preload() {
+        if (model == null && !loading) {
+            startLoading();
+        }
+    }
+
+    public synchronized Handle acquire() {
+        refCount++;
+        if (model == null && !loading) {
+            startLoading();
+        }
+        return new Handle();
+    }
+
+    // Frees the interpreter when nobody holds a handle and the system is short on memory
+    public synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND && refCount == 0 && model != null) {
+            Log.i(TAG, "Releasing idle model");
+            model.close();
+            model = null;
+            if (interpreterPool != null) {
+                interpreterPool.close();
+                interpreterPool = null;
+            }
+        }
+    }
+
+    public synchronized long getColdLoadMs() {
+        return coldLoadMs;
+    }
+
+    public synchronized long getWarmUpMs() {
+        return warmUpMs;
+    }
+
+    // The model if it is loaded right now, else null; unlike acquire() this never starts a load
+    public synchronized Classifier getLoadedModel() {
+        return model;
+    }
+
+    // Interpreters for parallel bulk work, built on the loader thread after the model loads.
+    // Returns null until then, or when the device has too few cores to benefit.
+    public synchronized InterpreterPool getInterpreterPool() {
+        return interpreterPool;
+    }
+
+    // Result cache for the given model; returns null if it cannot be opened. Opening hashes
+    // the model file, which load() does on the loader thread right after loading.
+    public PredictionCache getPredictionCache(Classifier model) {
+        String version = model.getModelVersion();
+        synchronized (this) {
+            if (predictionCache != null && version.equals(predictionCacheVersion)) {
+                return predictionCache;
+            }
+            if (predictionCache != null) {
+                predictionCache.close();
+                predictionCache = null;
+            }
+            try {
+                predictionCache = new PredictionCache(new File(appContext.getCacheDir(), "predictions"),
+                        version, model.getNumClasses(), CACHE_MEMORY_ENTRIES, CACHE_DISK_BYTES);
+                predictionCacheVersion = version;
+            } catch (IOException e) {
+                Log.e(TAG, "Error opening the prediction cache", e);
+            }
+            return predictionCache;
+        }
+    }
+
+    private void startLoading() {
+        loading = true;
+        loadError = null;
+        loaderExecutor.execute(this::load);
+    }
+
+    private void load() {
+        long startTime = SystemClock.elapsedRealtime();
+        TFLiteModel loaded = null;
+        Exception error = null;
+        long loadedTime = startTime;
+        BackendConfig tuned = BackendAutotuner.loadTuned(appContext);
+        try {
+            loaded = new TFLiteModel(appContext, tuned != null ? tuned : BackendConfig.defaultConfig());
+            loadedTime = SystemClock.elapsedRealtime();
+            loaded.warmUp();
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading model", e);
+            error = e;
+            if (loaded != null) {
+                loaded.close();
+                loaded = null;
+            }
+        }
+        long endTime = SystemClock.elapsedRealtime();
+
+        synchronized (this) {
+            loading = false;
+            model = loaded;
+            loadError = error;
+            if (loaded != null) {
+                coldLoadMs = loadedTime - startTime;
+                warmUpMs = endTime - loadedTime;
+                Log.i(TAG, "Model cold load: " + coldLoadMs + " ms, warm-up: " + warmUpMs + " ms ("
+                        + loaded.getBackendConfig() + ")");
+            }
+        }
+        mainHandler.post(this::dispatchPending);
+
+        if (loaded != null) {
+            final TFLiteModel cacheModel = loaded;
+            loaderExecutor.execute(() -> getPredictionCache(cacheModel));
+            loaderExecutor.execute(() -> buildInterpreterPool(cacheModel));
+        }
+
+        // First launch on this device: find the fastest backend for the next load. Queued on
+        // the loader thread so it never delays handing out the model.
+        if (loaded != null && tuned == null) {
+            loaderExecutor.execute(this::autotune);
+        }
+    }
+
+    // Copies of the loaded model with fewer threads each, so that together they cover the cores
+    private void buildInterpreterPool(TFLiteModel source) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = Math.min(POOL_THREADS_PER_INTERPRETER, source.getBackendConfig().numThreads);
+        int size = Math.min(POOL_MAX_SIZE, InterpreterPool.recommendedSize(cores, threads));
+        if (size < 2) {
+            return;
+        }
+        BackendConfig config = source.getBackendConfig().withThreads(threads);
+        List<TFLiteModel> members = new ArrayList<>();
+        try {
+            for (int i = 0; i < size; i++) {
+                members.add(source.copy(config));
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error creating the interpreter pool", e);
+            for (TFLiteModel member : members) {
+                member.close();
+            }
+            return;
+        }
+        InterpreterPool pool = new InterpreterPool(members);
+        synchronized (this) {
+            // The model may have been released while the copies were being created
+            if (model != source || interpreterPool != null) {
+                pool.close();
+                return;
+            }
+            interpreterPool = pool;
+        }
+        Log.i(TAG, "Interpreter pool: " + size + " x " + config);
+    }
+
+    private void autotune() {
+        try {
+            BackendAutotuner.autotune(appContext);
+        } catch (IOException e) {
+            Log.e(TAG, "Backend autotune failed", e);
+        }
+    }
+
+    private void dispatchPending() {
+        List<Handle> handles;
+        Classifier loaded;
+        Exception error;
+        synchronized (this) {
+            handles = new ArrayList<>(pendingHandles);
+            pendingHandles.clear();
+            loaded = model;
+            error = loadError;
+        }
+        for (Handle handle : handles) {
+            handle.dispatch(loaded, error);
+        }
+    }
+
+    private synchronized void release() {
+        refCount--;
+    }
+
+    public final class Handle implements Closeable {
+        private Listener listener;
+        private boolean released;
+
+        private Handle() {
+        }
+
+        // Returns null until the model has finished loading
+        public Classifier getModel() {
+            synchronized (ModelRegistry.this) {
+                return released ? null : model;
+            }
+        }
+
+        // Notifies the listener on the main thread once the model is available
+        public void whenReady(Listener listener) {
+            synchronized (ModelRegistry.this) {
+                if (released) {
+                    return;
+                }
+                this.listener = listener;
+                if (loading) {
+                    pendingHandles.add(this);
+                    return;
+                }
+            }
+            mainHandler.post(() -> {
+                Classifier loaded;
+                Exception error;
+                synchronized (ModelRegistry.this) {
+                    loaded = model;
+                    error = loadError;
+                }
+                dispatch(loaded, error);
+            });
+        }
+
+        private void dispatch(Classifier loaded, Exception error) {
+            Listener target;
+            synchronized (ModelRegistry.this) {
+                target = released ? null : listener;
+                listener = null;
+            }
+            if (target == null) {
+                return;
+            }
+            if (loaded != null) {
+                target.onModelReady(loaded);
+            } else {
+                target.onModelError(error);
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (ModelRegistry.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                listener = null;
+                pendingHandles.remove(this);
+            }
+            release();
+        }
+    }
+}
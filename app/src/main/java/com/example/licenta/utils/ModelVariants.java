@@ -0,0 +1,94 @@
+package com.example.licenta.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Debug;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The model files a {@link ModelBenchmark} can compare on this device: every .tflite asset,
+ * plus any .tflite copied into the app's files/models directory. All of them are loaded
+ * through the same memory-mapped {@link TFLiteModel} path as the production model.
+ */
+public final class ModelVariants {
+    private static final String MODEL_EXTENSION = ".tflite";
+
+    private ModelVariants() {
+    }
+
+    public static File getModelDirectory(Context context) {
+        return new File(context.getFilesDir(), "models");
+    }
+
+    public static List<ModelBenchmark.Variant> find(final Context context, final BackendConfig config) throws IOException {
+        List<ModelBenchmark.Variant> variants = new ArrayList<>();
+        String[] assets = context.getAssets().list("");
+        if (assets != null) {
+            for (final String asset : assets) {
+                if (asset.endsWith(MODEL_EXTENSION)) {
+                    variants.add(new ModelBenchmark.Variant("asset:" + asset, new ModelBenchmark.Loader() {
+                        @Override
+                        public Classifier load() throws IOException {
+                            return new TFLiteModel(context, asset, config);
+                        }
+                    }));
+                }
+            }
+        }
+        File[] files = getModelDirectory(context).listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().endsWith(MODEL_EXTENSION)) {
+                    variants.add(new ModelBenchmark.Variant("file:" + file.getName(), new ModelBenchmark.Loader() {
+                        @Override
+                        public Classifier load() throws IOException {
+                            return new TFLiteModel(context, file, config);
+                        }
+                    }));
+                }
+            }
+        }
+        return variants;
+    }
+
+    // Interpreters allocate their tensors natively, so the Java heap alone would miss most of it
+    public static ModelBenchmark.MemoryProbe memoryProbe() {
+        return new ModelBenchmark.MemoryProbe() {
+            @Override
+            public long usedBytes() {
+                Runtime runtime = Runtime.getRuntime();
+                return Debug.getNativeHeapAllocatedSize() + runtime.totalMemory() - runtime.freeMemory();
+            }
+        };
+    }
+
+    public static ModelBenchmark.Image toImage(String name, Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        return new ModelBenchmark.Image(name, pixels, width, height);
+    }
+
+    // Writes the results next to the exported metrics; call off the main thread
+    public static File export(Context context, List<ModelBenchmark.Result> results, int imageCount) throws IOException {
+        File directory = new File(context.getExternalFilesDir(null), "benchmarks");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, "variants-" + System.currentTimeMillis() + ".csv");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# device: " + Build.MANUFACTURER + " " + Build.MODEL + ", API " + Build.VERSION.SDK_INT + "\n");
+            writer.write("# images: " + imageCount + "\n");
+            ModelBenchmark.writeCsv(results, writer);
+        }
+        return file;
+    }
+}
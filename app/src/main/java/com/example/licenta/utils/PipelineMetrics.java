@@ -0,0 +1,164 @@
+package com.example.licenta.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage latency histograms and throughput for one inference pipeline. The camera and the
+ * gallery record into their own process-wide instance, so numbers survive leaving a screen
+ * and can be exported together.
+ */
+public class PipelineMetrics {
+    public enum Stage {
+        // Downsampled gallery decode; for camera frames the YUV decode is part of PREPROCESS
+        DECODE,
+        // The camera's leaf check, run before PREPROCESS; frames it rejects stop here
+        GATE,
+        // Rotation, crop/resize and normalization, which run fused in a single pass
+        PREPROCESS,
+        INFERENCE,
+        // Dequantizing scores and building the PredictionResult
+        POSTPROCESS,
+        // From handing the result to the main thread until it is on screen
+        DELIVERY,
+        // A whole frame or image, from arrival to result
+        TOTAL
+    }
+
+    public static final PipelineMetrics CAMERA = new PipelineMetrics("camera");
+    public static final PipelineMetrics GALLERY = new PipelineMetrics("gallery");
+
+    private final String name;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong gated = new AtomicLong();
+    private final AtomicLong gateRejected = new AtomicLong();
+    private final AtomicLong startNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastFrameNanos = new AtomicLong();
+
+    public PipelineMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    // Records the time since startNanos and returns the current time, so stages chain:
+    // t = metrics.lap(Stage.DECODE, t);
+    public long lap(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        record(stage, now - startNanos);
+        return now;
+    }
+
+    public void onFrame() {
+        lastFrameNanos.set(System.nanoTime());
+        frames.incrementAndGet();
+    }
+
+    public void onGate(boolean passed) {
+        gated.incrementAndGet();
+        if (!passed) {
+            gateRejected.incrementAndGet();
+        }
+    }
+
+    // Share of gated frames that skipped the classifier
+    public float getGateSkipRate() {
+        long total = gated.get();
+        return total > 0 ? gateRejected.get() / (float) total : 0;
+    }
+
+    // Share of the compute time, decoding to postprocessing, spent in the gate
+    public float getGateCostShare() {
+        double total = 0;
+        for (Stage stage : new Stage[]{Stage.DECODE, Stage.GATE, Stage.PREPROCESS, Stage.INFERENCE, Stage.POSTPROCESS}) {
+            total += totalNanos(stage);
+        }
+        return total > 0 ? (float) (totalNanos(Stage.GATE) / total) : 0;
+    }
+
+    private double totalNanos(Stage stage) {
+        LatencyHistogram histogram = get(stage);
+        return (double) histogram.getMeanNanos() * histogram.getCount();
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    // Completed frames per second from creation or the last reset up to the latest frame, so
+    // the rate does not decay while nothing is being classified
+    public float getFramesPerSecond() {
+        double seconds = (lastFrameNanos.get() - startNanos.get()) / 1e9;
+        return seconds > 0 ? (float) (frames.get() / seconds) : 0;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        frames.set(0);
+        gated.set(0);
+        gateRejected.set(0);
+        startNanos.set(System.nanoTime());
+        lastFrameNanos.set(startNanos.get());
+    }
+
+    // Short multi-line summary for an on-screen overlay, in milliseconds
+    public String summary() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.US, "%.1f fps, times in ms", getFramesPerSecond()));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.US, "\n%-11s p50 %6.2f  p95 %6.2f  p99 %6.2f",
+                    stage.name().toLowerCase(Locale.US),
+                    millis(histogram.getPercentileNanos(0.5)),
+                    millis(histogram.getPercentileNanos(0.95)),
+                    millis(histogram.getPercentileNanos(0.99))));
+        }
+        if (gated.get() > 0) {
+            builder.append(String.format(Locale.US, "\ngate skipped %.0f%% of frames, %.1f%% of compute",
+                    getGateSkipRate() * 100, getGateCostShare() * 100));
+        }
+        return builder.toString();
+    }
+
+    public static void writeCsvHeader(Writer writer) throws IOException {
+        writer.write("pipeline,stage,count,fps,mean_ms,p50_ms,p95_ms,p99_ms,max_ms\n");
+    }
+
+    // One CSV row per stage that has samples
+    public void writeCsv(Writer writer) throws IOException {
+        float fps = getFramesPerSecond();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            writer.write(String.format(Locale.US, "%s,%s,%d,%.2f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                    name, stage.name().toLowerCase(Locale.US), histogram.getCount(), fps,
+                    millis(histogram.getMeanNanos()),
+                    millis(histogram.getPercentileNanos(0.5)),
+                    millis(histogram.getPercentileNanos(0.95)),
+                    millis(histogram.getPercentileNanos(0.99)),
+                    millis(histogram.getMaxNanos())));
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
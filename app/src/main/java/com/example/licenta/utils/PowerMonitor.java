@@ -0,0 +1,126 @@
+package com.example.licenta.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Feeds thermal status, battery level and battery saver into a {@link PowerPolicy} and reports
+ * mode changes on the main thread. Thermal status needs API 29; older devices are only
+ * throttled for the battery. While the mode is below full, conditions are checked again
+ * every {@link #RECHECK_MS}, because nothing is broadcast when they stay the same long enough
+ * to recover.
+ */
+public class PowerMonitor {
+    private static final long RECOVERY_DELAY_MS = 30_000;
+    private static final long RECHECK_MS = 10_000;
+
+    public interface Listener {
+        void onPowerModeChanged(PowerPolicy.Mode mode, String reason);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final PowerManager powerManager;
+    private final PowerPolicy policy = new PowerPolicy(RECOVERY_DELAY_MS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable recheck = this::evaluate;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+    private int batteryPercent = 100;
+    private boolean charging = true;
+    private PowerPolicy.Mode reportedMode;
+    private String reportedReason;
+    private boolean started;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                readBattery(intent);
+            }
+            evaluate();
+        }
+    };
+
+    public PowerMonitor(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    // Call on the main thread; the listener is called once right away with the current mode
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        // The battery broadcast is sticky, so registering returns the current level
+        Intent battery = context.registerReceiver(receiver, filter);
+        if (battery != null) {
+            readBattery(battery);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalListener = status -> evaluate();
+            powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(context), thermalListener);
+        }
+        evaluate();
+    }
+
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        context.unregisterReceiver(receiver);
+        if (thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
+        mainHandler.removeCallbacks(recheck);
+    }
+
+    public PowerPolicy.Mode getMode() {
+        return policy.getMode();
+    }
+
+    private void readBattery(Intent intent) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level >= 0 && scale > 0) {
+            batteryPercent = level * 100 / scale;
+        }
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    private void evaluate() {
+        if (!started) {
+            return;
+        }
+        int thermalStatus = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? powerManager.getCurrentThermalStatus() : PowerManager.THERMAL_STATUS_NONE;
+        PowerPolicy.Mode mode = policy.update(thermalStatus, batteryPercent, charging,
+                powerManager.isPowerSaveMode(), SystemClock.elapsedRealtime());
+        String reason = policy.getReason();
+        mainHandler.removeCallbacks(recheck);
+        if (mode != PowerPolicy.Mode.FULL) {
+            mainHandler.postDelayed(recheck, RECHECK_MS);
+        }
+        if (mode != reportedMode || !reason.equals(reportedReason)) {
+            reportedMode = mode;
+            reportedReason = reason;
+            listener.onPowerModeChanged(mode, reason);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.licenta.utils;
+
+import android.os.PowerManager;
+
+/**
+ * Picks how hard the live camera pipeline may work from the device's thermal status and
+ * battery. Worse conditions lower the mode at once, by as many steps as needed. Better ones
+ * raise it one step at a time, and only after they have lasted {@code recoveryDelayMs}. The
+ * battery also has to be {@link #BATTERY_HYSTERESIS} percent above the threshold it crossed.
+ * This way a phone hovering at a threshold does not flip modes on every update.
+ */
+public class PowerPolicy {
+    public enum Mode {
+        FULL("full", 10, 0, 0, 0),
+        BALANCED("balanced", 5, 2, 1280, 720),
+        SAVER("saver", 2, 1, 640, 480),
+        MINIMAL("minimal", 0.5f, 1, 640, 480);
+
+        public final String label;
+        public final float maxFps;
+        // 0 leaves the interpreter's own thread count, and the camera's own preview size
+        public final int maxThreads;
+        public final int previewWidth;
+        public final int previewHeight;
+
+        Mode(String label, float maxFps, int maxThreads, int previewWidth, int previewHeight) {
+            this.label = label;
+            this.maxFps = maxFps;
+            this.maxThreads = maxThreads;
+            this.previewWidth = previewWidth;
+            this.previewHeight = previewHeight;
+        }
+    }
+
+    // Battery levels, in percent, below which a discharging phone is held to a mode
+    static final int BATTERY_BALANCED = 30;
+    static final int BATTERY_SAVER = 15;
+    static final int BATTERY_HYSTERESIS = 5;
+
+    private final long recoveryDelayMs;
+    private Mode mode = Mode.FULL;
+    private String reason = "";
+    // When conditions first allowed a better mode, or -1 while they do not
+    private long betterSinceMs = -1;
+
+    public PowerPolicy(long recoveryDelayMs) {
+        this.recoveryDelayMs = recoveryDelayMs;
+    }
+
+    // thermalStatus is a PowerManager.THERMAL_STATUS_* value; returns the mode to run in
+    public synchronized Mode update(int thermalStatus, int batteryPercent, boolean charging,
+                                    boolean powerSave, long nowMs) {
+        Mode target = target(thermalStatus, batteryPercent, charging, powerSave, 0);
+        Mode recovered = target(thermalStatus, batteryPercent, charging, powerSave, BATTERY_HYSTERESIS);
+        if (target.ordinal() > mode.ordinal()) {
+            mode = target;
+            betterSinceMs = -1;
+        } else if (recovered.ordinal() < mode.ordinal()) {
+            if (betterSinceMs < 0) {
+                betterSinceMs = nowMs;
+            } else if (nowMs - betterSinceMs >= recoveryDelayMs) {
+                mode = Mode.values()[mode.ordinal() - 1];
+                // The next step up has to wait a full delay again
+                betterSinceMs = mode.ordinal() > recovered.ordinal() ? nowMs : -1;
+            }
+        } else {
+            betterSinceMs = -1;
+        }
+        reason = describe(thermalStatus, batteryPercent, charging, powerSave);
+        return mode;
+    }
+
+    public synchronized Mode getMode() {
+        return mode;
+    }
+
+    // What is currently holding the mode down, or "" when nothing is
+    public synchronized String getReason() {
+        return mode == Mode.FULL ? "" : reason;
+    }
+
+    private static Mode target(int thermalStatus, int batteryPercent, boolean charging, boolean powerSave,
+                               int batteryMargin) {
+        Mode target = thermalMode(thermalStatus);
+        if (!charging) {
+            if (batteryPercent <= BATTERY_SAVER + batteryMargin) {
+                target = worse(target, Mode.SAVER);
+            } else if (batteryPercent <= BATTERY_BALANCED + batteryMargin) {
+                target = worse(target, Mode.BALANCED);
+            }
+        }
+        if (powerSave) {
+            target = worse(target, Mode.BALANCED);
+        }
+        return target;
+    }
+
+    private static Mode thermalMode(int thermalStatus) {
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            return Mode.MINIMAL;
+        } else if (thermalStatus == PowerManager.THERMAL_STATUS_MODERATE) {
+            return Mode.SAVER;
+        } else if (thermalStatus == PowerManager.THERMAL_STATUS_LIGHT) {
+            return Mode.BALANCED;
+        }
+        return Mode.FULL;
+    }
+
+    private static Mode worse(Mode a, Mode b) {
+        return a.ordinal() >= b.ordinal() ? a : b;
+    }
+
+    private static String describe(int thermalStatus, int batteryPercent, boolean charging, boolean powerSave) {
+        Mode thermal = thermalMode(thermalStatus);
+        Mode battery = charging ? Mode.FULL
+                : target(PowerManager.THERMAL_STATUS_NONE, batteryPercent, false, false, BATTERY_HYSTERESIS);
+        if (thermal != Mode.FULL && thermal.ordinal() >= battery.ordinal()) {
+            return thermal.ordinal() >= Mode.SAVER.ordinal() ? "device hot" : "device warm";
+        } else if (battery != Mode.FULL) {
+            return "battery " + batteryPercent + "%";
+        } else if (powerSave) {
+            return "battery saver";
+        }
+        // Conditions are fine again, the mode is waiting out the recovery delay
+        return "cooling down";
+    }
+}
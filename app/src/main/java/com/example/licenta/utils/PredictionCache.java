@@ -0,0 +1,202 @@
+package com.example.licenta.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-level cache of class scores keyed by a {@link ContentHasher} digest of the decoded image.
+ * The memory tier is a small LRU map. The disk tier is one append-only file of fixed-size
+ * records (16-byte key, then the float scores) with an in-memory index of record positions;
+ * once it passes {@code maxDiskBytes} the oldest half of the records is dropped. Each model
+ * version gets its own file, and files left by other versions are deleted on open.
+ */
+public class PredictionCache implements Closeable {
+    private static final int MAGIC = 0x50434331; // "PCC1"
+    private static final int HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 16;
+
+    private final int numClasses;
+    private final int recordBytes;
+    private final int maxRecords;
+    private final Map<String, float[]> memory;
+    private final Map<String, Integer> diskIndex = new HashMap<>();
+    private final File file;
+    private final byte[] record;
+    private RandomAccessFile disk;
+    private int recordCount;
+
+    public PredictionCache(File directory, String modelVersion, int numClasses,
+                           final int memoryEntries, long maxDiskBytes) throws IOException {
+        this.numClasses = numClasses;
+        recordBytes = KEY_BYTES + numClasses * 4;
+        maxRecords = (int) Math.max(2, (maxDiskBytes - HEADER_BYTES) / recordBytes);
+        record = new byte[recordBytes];
+        memory = new LinkedHashMap<String, float[]>(memoryEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String fileName = modelVersion + ".bin";
+        File[] existing = directory.listFiles();
+        if (existing != null) {
+            for (File other : existing) {
+                if (!other.getName().equals(fileName)) {
+                    other.delete();
+                }
+            }
+        }
+        file = new File(directory, fileName);
+        open();
+    }
+
+    // Returns the cached scores, or null on a miss. The array must not be modified.
+    public synchronized float[] get(String key) {
+        float[] scores = memory.get(key);
+        if (scores != null) {
+            return scores;
+        }
+        Integer index = diskIndex.get(key);
+        if (index == null || disk == null) {
+            return null;
+        }
+        try {
+            disk.seek(position(index));
+            disk.readFully(record);
+        } catch (IOException e) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.position(KEY_BYTES);
+        scores = new float[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            scores[i] = buffer.getFloat();
+        }
+        memory.put(key, scores);
+        return scores;
+    }
+
+    // Stores the first numClasses entries of scores; the array is copied
+    public synchronized void put(String key, float[] scores, int offset) {
+        float[] copy = new float[numClasses];
+        System.arraycopy(scores, offset, copy, 0, numClasses);
+        memory.put(key, copy);
+        if (disk == null || diskIndex.containsKey(key)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        writeKey(key, buffer);
+        for (float score : copy) {
+            buffer.putFloat(score);
+        }
+        try {
+            if (recordCount >= maxRecords) {
+                compact();
+            }
+            disk.seek(position(recordCount));
+            disk.write(record);
+            diskIndex.put(key, recordCount);
+            recordCount++;
+        } catch (IOException e) {
+            // A broken disk tier only costs cache hits; keep serving from memory
+            closeDisk();
+        }
+    }
+
+    public synchronized int memorySize() {
+        return memory.size();
+    }
+
+    public synchronized int diskSize() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeDisk();
+    }
+
+    private void open() throws IOException {
+        disk = new RandomAccessFile(file, "rw");
+        if (disk.length() < HEADER_BYTES || disk.readInt() != MAGIC || disk.readInt() != numClasses) {
+            disk.setLength(0);
+            disk.writeInt(MAGIC);
+            disk.writeInt(numClasses);
+        }
+        // A record cut short by a crash is dropped
+        recordCount = (int) ((disk.length() - HEADER_BYTES) / recordBytes);
+        disk.setLength(position(recordCount));
+        disk.seek(HEADER_BYTES);
+        for (int i = 0; i < recordCount; i++) {
+            disk.readFully(record);
+            diskIndex.put(readKey(ByteBuffer.wrap(record)), i);
+        }
+    }
+
+    // Keeps the newest half of the records, shifted to the front of the file
+    private void compact() throws IOException {
+        int dropped = recordCount - maxRecords / 2;
+        byte[] kept = new byte[(recordCount - dropped) * recordBytes];
+        disk.seek(position(dropped));
+        disk.readFully(kept);
+        disk.seek(HEADER_BYTES);
+        disk.write(kept);
+        recordCount -= dropped;
+        disk.setLength(position(recordCount));
+
+        Iterator<Map.Entry<String, Integer>> entries = diskIndex.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Integer> entry = entries.next();
+            if (entry.getValue() < dropped) {
+                entries.remove();
+            } else {
+                entry.setValue(entry.getValue() - dropped);
+            }
+        }
+    }
+
+    private long position(int index) {
+        return HEADER_BYTES + (long) index * recordBytes;
+    }
+
+    private void closeDisk() {
+        if (disk != null) {
+            try {
+                disk.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+            disk = null;
+        }
+    }
+
+    // Keys are the 32 hex characters produced by ContentHasher.digest()
+    private static void writeKey(String key, ByteBuffer buffer) {
+        buffer.putLong(Long.parseUnsignedLong(key.substring(0, 16), 16));
+        buffer.putLong(Long.parseUnsignedLong(key.substring(16, 32), 16));
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        return hex(buffer.getLong()) + hex(buffer.getLong());
+    }
+
+    private static String hex(long value) {
+        String digits = Long.toHexString(value);
+        StringBuilder padded = new StringBuilder(16);
+        for (int i = digits.length(); i < 16; i++) {
+            padded.append('0');
+        }
+        return padded.append(digits).toString();
+    }
+}
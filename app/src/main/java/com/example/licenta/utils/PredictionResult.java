@@ -0,0 +1,75 @@
+package com.example.licenta.utils;
+
+/**
+ * Outcome of classifying one image: the full score vector, indexed by class id, plus the
+ * arg-max label and its score as a percentage. Ranked alternatives come from
+ * {@link #topK(int, int[])}, which fills a caller-owned array instead of sorting a copy.
+ */
+public class PredictionResult {
+    public final String label;
+    public final int labelIndex;
+    public final float accuracy;
+    public final long latency;
+    private final float[] scores;
+    private final String[] labels;
+
+    // Takes ownership of scores; labels is the model's shared, dense class-id-to-name table
+    public PredictionResult(float[] scores, String[] labels, long latency) {
+        int maxIndex = argMax(scores, 0, scores.length);
+        this.scores = scores;
+        this.labels = labels;
+        this.latency = latency;
+        labelIndex = maxIndex;
+        label = getLabel(maxIndex);
+        accuracy = scores[maxIndex] * 100; // Convert to percentage
+    }
+
+    // Index (relative to offset) of the highest of count scores; the first one wins ties
+    public static int argMax(float[] scores, int offset, int count) {
+        int maxIndex = 0;
+        for (int i = 1; i < count; i++) {
+            if (scores[offset + i] > scores[offset + maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    public int getNumClasses() {
+        return scores.length;
+    }
+
+    public float getScore(int classIndex) {
+        return scores[classIndex];
+    }
+
+    public String getLabel(int classIndex) {
+        return classIndex < labels.length ? labels[classIndex] : null;
+    }
+
+    // The score vector itself, not a copy; callers must not modify it
+    public float[] getScores() {
+        return scores;
+    }
+
+    // Writes the indices of the k highest scores into out, best first, and returns how many
+    // were written (at most k, out.length and the number of classes)
+    public int topK(int k, int[] out) {
+        int count = Math.min(k, Math.min(out.length, scores.length));
+        int filled = 0;
+        for (int i = 0; i < scores.length; i++) {
+            float score = scores[i];
+            if (filled == count && (count == 0 || score <= scores[out[count - 1]])) {
+                continue;
+            }
+            // Insertion into the sorted prefix; the last entry drops off when it is full
+            int j = filled < count ? filled++ : count - 1;
+            while (j > 0 && scores[out[j - 1]] < score) {
+                out[j] = out[j - 1];
+                j--;
+            }
+            out[j] = i;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.licenta.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes gallery photos at a bounded size. The bounds and EXIF orientation are read first,
+ * then the JPEG is decoded with the largest power-of-two sample size whose result still covers
+ * the requested size, so a 12-50 MP original is never held in memory at full resolution. The
+ * result is upright and its shorter side is exactly {@code minShortSide} (or smaller, for
+ * photos that are smaller than that to begin with). With a {@link BitmapPool}, both the sampled
+ * decode and the final bitmap reuse pooled pixel memory, and callers hand results back to the
+ * pool when they are done with them.
+ */
+public class SampledBitmapDecoder {
+    private final ContentResolver resolver;
+    private final BitmapPool pool;
+
+    public SampledBitmapDecoder(ContentResolver resolver) {
+        this(resolver, null);
+    }
+
+    public SampledBitmapDecoder(ContentResolver resolver, BitmapPool pool) {
+        this.resolver = resolver;
+        this.pool = pool;
+    }
+
+    public Bitmap decode(Uri uri, int minShortSide) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream stream = open(uri)) {
+            BitmapFactory.decodeStream(stream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not a supported image: " + uri);
+        }
+        int orientation = readOrientation(uri);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, minShortSide);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        if (pool != null) {
+            options.inMutable = true;
+            options.inBitmap = pool.poll(ceilDiv(bounds.outWidth, options.inSampleSize),
+                    ceilDiv(bounds.outHeight, options.inSampleSize));
+        }
+        Bitmap sampled;
+        try {
+            sampled = decodeSampled(uri, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            // The decoder could not reuse the pooled bitmap; decode into a new one
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            sampled = decodeSampled(uri, options);
+        }
+        if (sampled == null) {
+            throw new IOException("Could not decode " + uri);
+        }
+        return finish(sampled, orientation, minShortSide);
+    }
+
+    // Largest power of two that keeps the shorter side at or above minShortSide
+    public static int sampleSize(int width, int height, int minShortSide) {
+        int shortSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= minShortSide) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private Bitmap decodeSampled(Uri uri, BitmapFactory.Options options) throws IOException {
+        try (InputStream stream = open(uri)) {
+            return BitmapFactory.decodeStream(stream, null, options);
+        }
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream stream = resolver.openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return stream;
+    }
+
+    private int readOrientation(Uri uri) {
+        try (InputStream stream = open(uri)) {
+            return new ExifInterface(stream).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            // Formats without EXIF (PNG, WebP) are already upright
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    // Applies the EXIF orientation and the remaining (non power-of-two) downscale in one pass
+    private Bitmap finish(Bitmap sampled, int orientation, int minShortSide) {
+        Matrix matrix = new Matrix();
+        int shortSide = Math.min(sampled.getWidth(), sampled.getHeight());
+        boolean scale = shortSide > minShortSide;
+        if (scale) {
+            float factor = minShortSide / (float) shortSide;
+            matrix.postScale(factor, factor);
+        }
+        boolean reoriented = true;
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+            default:
+                reoriented = false;
+                break;
+        }
+        if (!scale && !reoriented) {
+            return sampled;
+        }
+        if (pool != null) {
+            // Same transform as createBitmap below, drawn into a pooled bitmap
+            RectF bounds = new RectF(0, 0, sampled.getWidth(), sampled.getHeight());
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+            Bitmap result = pool.get(Math.round(bounds.width()), Math.round(bounds.height()));
+            result.eraseColor(Color.TRANSPARENT);
+            new Canvas(result).drawBitmap(sampled, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+            pool.put(sampled);
+            return result;
+        }
+        Bitmap result = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if (result != sampled) {
+            sampled.recycle();
+        }
+        return result;
+    }
+}
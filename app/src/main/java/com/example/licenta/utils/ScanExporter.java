@@ -0,0 +1,259 @@
+package com.example.licenta.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams the scan history to CSV or JSON Lines, one row per scan, newest first. It writes the
+ * image reference, label, confidence, every class score, latency and time. A reader thread
+ * pages through the store and hands entries to the exporting thread through a bounded queue.
+ * Reading the next page overlaps with formatting and writing, and memory stays at
+ * {@link #QUEUE_CAPACITY} entries however long the history is. Scans queued before the export
+ * starts are included, later ones are not.
+ */
+public class ScanExporter {
+    private static final int PAGE_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int BUFFER_CHARS = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final String[] SOURCE_NAMES = {"camera", "gallery", "batch"};
+    private static final Row END = new Row(null, null);
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON_LINES("application/x-ndjson", "jsonl");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    public interface Listener {
+        // Called on the exporting thread every PROGRESS_INTERVAL rows
+        void onProgress(int written, int total);
+    }
+
+    private final ScanHistoryStore store;
+    private final String[] classNames;
+    // Only used on the exporting thread
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    private final StringBuilder line = new StringBuilder(256);
+
+    // classNames label the score columns; null, or a null name, falls back to class_<index>
+    public ScanExporter(ScanHistoryStore store, String[] classNames) {
+        this.store = store;
+        this.classNames = new String[store.getNumClasses()];
+        for (int i = 0; i < this.classNames.length; i++) {
+            String name = classNames != null && i < classNames.length ? classNames[i] : null;
+            this.classNames[i] = name != null ? name : "class_" + i;
+        }
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Writes every scan to out and flushes it; out is left open. Blocks until done and returns
+     * the number of rows written. Interrupting the calling thread stops the export.
+     */
+    public int export(OutputStream out, Format format, Listener listener) throws IOException, InterruptedException {
+        // Scans still in the store's write queue are not counted by size() yet
+        store.flush();
+        final int total = store.size();
+        final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final IOException[] readError = new IOException[1];
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    read(total, queue);
+                } catch (IOException e) {
+                    readError[0] = e;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // The exporter has stopped taking rows
+                }
+            }
+        }, "scan-export-reader");
+        reader.start();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+        int written = 0;
+        try {
+            if (format == Format.CSV) {
+                writeCsvHeader(writer);
+            }
+            for (Row row = queue.take(); row != END; row = queue.take()) {
+                if (format == Format.CSV) {
+                    writeCsvRow(row, writer);
+                } else {
+                    writeJsonRow(row, writer);
+                }
+                written++;
+                if (listener != null && written % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(written, total);
+                }
+            }
+            writer.flush();
+        } finally {
+            reader.interrupt();
+            reader.join();
+        }
+        // END is also queued after a failed read, so the error is visible by now
+        if (readError[0] != null) {
+            throw readError[0];
+        }
+        return written;
+    }
+
+    // Runs on the reader thread; pages from the snapshot's newest entry down to the oldest
+    private void read(int total, BlockingQueue<Row> queue) throws IOException, InterruptedException {
+        long beforeId = total;
+        while (true) {
+            List<ScanHistoryStore.Entry> page = store.page(beforeId, PAGE_SIZE);
+            for (ScanHistoryStore.Entry entry : page) {
+                queue.put(new Row(entry, store.readReference(entry)));
+            }
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            beforeId = page.get(page.size() - 1).id;
+        }
+    }
+
+    private void writeCsvHeader(Writer writer) throws IOException {
+        line.setLength(0);
+        line.append("id,time,timestamp_ms,source,image,label,label_index,confidence,latency_ms");
+        for (String name : classNames) {
+            line.append(',');
+            appendCsv(name);
+        }
+        line.append('\n');
+        writer.append(line);
+    }
+
+    private void writeCsvRow(Row row, Writer writer) throws IOException {
+        ScanHistoryStore.Entry entry = row.entry;
+        line.setLength(0);
+        line.append(entry.id).append(',')
+                .append(timeFormat.format(new Date(entry.timestamp))).append(',')
+                .append(entry.timestamp).append(',')
+                .append(sourceName(entry.source)).append(',');
+        appendCsv(row.reference);
+        line.append(',');
+        appendCsv(entry.label);
+        line.append(',').append(entry.labelIndex).append(',')
+                .append(confidence(entry)).append(',')
+                .append(entry.latencyMs);
+        for (float score : entry.scores) {
+            line.append(',').append(score);
+        }
+        line.append('\n');
+        writer.append(line);
+    }
+
+    private void writeJsonRow(Row row, Writer writer) throws IOException {
+        ScanHistoryStore.Entry entry = row.entry;
+        line.setLength(0);
+        line.append("{\"id\":").append(entry.id)
+                .append(",\"time\":\"").append(timeFormat.format(new Date(entry.timestamp)))
+                .append("\",\"timestamp_ms\":").append(entry.timestamp)
+                .append(",\"source\":\"").append(sourceName(entry.source))
+                .append("\",\"image\":");
+        appendJson(row.reference);
+        line.append(",\"label\":");
+        appendJson(entry.label);
+        line.append(",\"label_index\":").append(entry.labelIndex)
+                .append(",\"confidence\":").append(confidence(entry))
+                .append(",\"latency_ms\":").append(entry.latencyMs)
+                .append(",\"scores\":{");
+        for (int i = 0; i < entry.scores.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendJson(classNames[i]);
+            line.append(':').append(entry.scores[i]);
+        }
+        line.append("}}\n");
+        writer.append(line);
+    }
+
+    private static String sourceName(int source) {
+        return source >= 0 && source < SOURCE_NAMES.length ? SOURCE_NAMES[source] : "unknown";
+    }
+
+    private static float confidence(ScanHistoryStore.Entry entry) {
+        return entry.labelIndex >= 0 && entry.labelIndex < entry.scores.length ? entry.scores[entry.labelIndex] : 0;
+    }
+
+    // Quoted only when needed; null is an empty field
+    private void appendCsv(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            line.append(c);
+            if (c == '"') {
+                line.append('"');
+            }
+        }
+        line.append('"');
+    }
+
+    private void appendJson(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static class Row {
+        final ScanHistoryStore.Entry entry;
+        final String reference;
+
+        Row(ScanHistoryStore.Entry entry, String reference) {
+            this.entry = entry;
+            this.reference = reference;
+        }
+    }
+}
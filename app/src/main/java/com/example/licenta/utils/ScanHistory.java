@@ -0,0 +1,91 @@
+package com.example.licenta.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The app's one {@link ScanHistoryStore}, opened on first use in the files directory, plus the
+ * thumbnail encoding shared by every screen that records scans. Recording only queues the
+ * entry, but encoding a thumbnail is not free, so callers record from their worker threads.
+ */
+public final class ScanHistory {
+    private static final String TAG = "ScanHistory";
+    public static final int THUMBNAIL_SIZE = 96;
+    private static final int THUMBNAIL_QUALITY = 75;
+
+    private static ScanHistory instance;
+
+    private final File directory;
+    private ScanHistoryStore store;
+    private boolean unavailable;
+
+    private ScanHistory(Context context) {
+        directory = new File(context.getApplicationContext().getFilesDir(), "history");
+    }
+
+    public static synchronized ScanHistory getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScanHistory(context);
+        }
+        return instance;
+    }
+
+    // numClasses only matters for a new history; null if the history cannot be opened
+    public synchronized ScanHistoryStore getStore(int numClasses) {
+        if (store == null && !unavailable) {
+            try {
+                store = new ScanHistoryStore(directory, numClasses);
+            } catch (IOException e) {
+                Log.e(TAG, "Error opening the scan history", e);
+                unavailable = true;
+            }
+        }
+        return store;
+    }
+
+    // For readers: null until the first scan has been recorded, so no class count is guessed
+    public synchronized ScanHistoryStore getExistingStore() {
+        if (store == null && !ScanHistoryStore.exists(directory)) {
+            return null;
+        }
+        return getStore(0);
+    }
+
+    // reference (e.g. the image's URI) and thumbnailSource may be null; the bitmap is only read,
+    // never recycled
+    public void record(PredictionResult result, int source, String reference, Bitmap thumbnailSource) {
+        ScanHistoryStore history = getStore(result.getNumClasses());
+        if (history == null) {
+            return;
+        }
+        byte[] thumbnail = thumbnailSource != null ? encodeThumbnail(thumbnailSource) : null;
+        try {
+            history.add(System.currentTimeMillis(), result.label, result.labelIndex,
+                    result.getScores(), 0, result.latency, source, reference, thumbnail);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A THUMBNAIL_SIZE square JPEG of the centre of the bitmap
+    public static byte[] encodeThumbnail(Bitmap bitmap) {
+        int side = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        float scale = Math.min(1f, THUMBNAIL_SIZE / (float) side);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        Bitmap square = Bitmap.createBitmap(bitmap, (bitmap.getWidth() - side) / 2,
+                (bitmap.getHeight() - side) / 2, side, side, matrix, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        square.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+        if (square != bitmap) {
+            square.recycle();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,421 @@
+package com.example.licenta.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Every scan ever made, on disk. Entries are fixed-size records in one append-only file
+ * (timestamp, label, full scores, latency, source and where the thumbnail and image reference
+ * are). Thumbnails, as JPEG bytes, and image references, as UTF-8, are appended to a second
+ * file. {@link #add} only queues the entry; a writer thread appends whatever has queued up in
+ * one write per file, so callers never wait on the disk.
+ * An entry's id is its record number, so {@link #page} seeks straight to a page of the newest
+ * entries before a given id and reads it in one go; the history is never loaded as a whole.
+ */
+public class ScanHistoryStore implements Closeable {
+    public static final int SOURCE_CAMERA = 0;
+    public static final int SOURCE_GALLERY = 1;
+    public static final int SOURCE_BATCH = 2;
+
+    private static final String RECORDS_FILE = "history.bin";
+    private static final String THUMBNAILS_FILE = "thumbnails.bin";
+    private static final int MAGIC = 0x53485332; // "SHS2"
+    // Histories from before image references; upgraded when opened
+    private static final int MAGIC_V1 = 0x53485331; // "SHS1"
+    private static final int HEADER_BYTES = 8;
+    // Length byte plus UTF-8, truncated to fit
+    private static final int LABEL_BYTES = 48;
+    private static final int FIXED_BYTES_V1 = 8 + 4 + 4 + 4 + 8 + 4 + LABEL_BYTES;
+    private static final int FIXED_BYTES = FIXED_BYTES_V1 + 4;
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int MAX_BATCH = 64;
+    private static final Pending END = new Pending(0, null, 0, null, 0, 0, null, null);
+
+    private final int numClasses;
+    private final int recordBytes;
+    private final FileChannel records;
+    private final FileChannel thumbnails;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile int recordCount;
+    private long thumbnailBytes;
+    private long submitted;
+    private long processed;
+    private long failedWrites;
+    private boolean closed;
+
+    public static class Entry {
+        public final long id;
+        public final long timestamp;
+        public final String label;
+        public final int labelIndex;
+        public final float[] scores;
+        public final long latencyMs;
+        public final int source;
+        // The image reference follows the thumbnail in the blob file
+        final long thumbnailOffset;
+        final int thumbnailLength;
+        final int referenceLength;
+
+        Entry(long id, long timestamp, String label, int labelIndex, float[] scores, long latencyMs,
+              int source, long thumbnailOffset, int thumbnailLength, int referenceLength) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.label = label;
+            this.labelIndex = labelIndex;
+            this.scores = scores;
+            this.latencyMs = latencyMs;
+            this.source = source;
+            this.thumbnailOffset = thumbnailOffset;
+            this.thumbnailLength = thumbnailLength;
+            this.referenceLength = referenceLength;
+        }
+
+        public boolean hasThumbnail() {
+            return thumbnailLength > 0;
+        }
+
+        public boolean hasReference() {
+            return referenceLength > 0;
+        }
+    }
+
+    // numClasses only applies to a new history; an existing one keeps the count it was made with
+    public ScanHistoryStore(File directory, int numClasses) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File recordsFile = new File(directory, RECORDS_FILE);
+        if (readMagic(recordsFile) == MAGIC_V1) {
+            upgradeV1(recordsFile);
+        }
+        RandomAccessFile file = new RandomAccessFile(recordsFile, "rw");
+        if (file.length() < HEADER_BYTES || file.readInt() != MAGIC) {
+            file.setLength(0);
+            file.writeInt(MAGIC);
+            file.writeInt(numClasses);
+        } else {
+            numClasses = file.readInt();
+        }
+        this.numClasses = numClasses;
+        recordBytes = FIXED_BYTES + numClasses * 4;
+        // A record cut short by a crash is dropped
+        recordCount = (int) ((file.length() - HEADER_BYTES) / recordBytes);
+        file.setLength(position(recordCount));
+        records = file.getChannel();
+        thumbnails = new RandomAccessFile(new File(directory, THUMBNAILS_FILE), "rw").getChannel();
+        thumbnailBytes = thumbnails.size();
+
+        writer = new Thread(this::writeLoop, "scan-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Whether anything was ever recorded in directory, without creating the files
+    public static boolean exists(File directory) {
+        return new File(directory, RECORDS_FILE).isFile();
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    // Entries on disk; queued ones are not counted until written
+    public int size() {
+        return recordCount;
+    }
+
+    public synchronized long getFailedWrites() {
+        return failedWrites;
+    }
+
+    /**
+     * Queues one scan; the scores (numClasses from offset) are copied. Blocks only if the
+     * writer has fallen QUEUE_CAPACITY entries behind. reference names the scanned image,
+     * e.g. its content URI; it and thumbnail may be null.
+     */
+    public void add(long timestamp, String label, int labelIndex, float[] scores, int offset,
+                    long latencyMs, int source, String reference, byte[] thumbnail) throws InterruptedException {
+        float[] copy = new float[numClasses];
+        System.arraycopy(scores, offset, copy, 0, Math.min(numClasses, scores.length - offset));
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("History is closed");
+            }
+            submitted++;
+        }
+        queue.put(new Pending(timestamp, label, labelIndex, copy, latencyMs, source,
+                reference != null ? reference.getBytes(StandardCharsets.UTF_8) : null, thumbnail));
+    }
+
+    // Waits until everything queued so far has been written (or has failed to be)
+    public synchronized void flush() throws InterruptedException {
+        long target = submitted;
+        while (processed < target) {
+            wait();
+        }
+    }
+
+    /**
+     * Up to limit entries older than beforeId, newest first. Start with Long.MAX_VALUE and pass
+     * the id of the last entry of each page to get the next one; an empty list is the end.
+     */
+    public List<Entry> page(long beforeId, int limit) throws IOException {
+        int end = (int) Math.min(beforeId, recordCount);
+        int start = Math.max(0, end - limit);
+        List<Entry> entries = new ArrayList<>(end - start);
+        if (end <= start) {
+            return entries;
+        }
+        ByteBuffer block = ByteBuffer.allocate((end - start) * recordBytes);
+        readFully(records, block, position(start));
+        for (int id = end - 1; id >= start; id--) {
+            block.position((id - start) * recordBytes);
+            entries.add(readEntry(id, block));
+        }
+        return entries;
+    }
+
+    public byte[] readThumbnail(Entry entry) throws IOException {
+        if (!entry.hasThumbnail()) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(entry.thumbnailLength);
+        readFully(thumbnails, bytes, entry.thumbnailOffset);
+        return bytes.array();
+    }
+
+    public String readReference(Entry entry) throws IOException {
+        if (!entry.hasReference()) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(entry.referenceLength);
+        readFully(thumbnails, bytes, entry.thumbnailOffset + entry.thumbnailLength);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    // Writes out what is queued, then stops the writer and closes the files
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            records.close();
+            thumbnails.close();
+        } catch (IOException e) {
+            // Nothing left to do
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        boolean ended = false;
+        while (!ended) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            ended = batch.remove(END);
+            boolean written = false;
+            try {
+                write(batch);
+                written = true;
+            } catch (IOException e) {
+                // The batch is lost, but later ones may still succeed
+            }
+            synchronized (this) {
+                processed += batch.size();
+                if (!written) {
+                    failedWrites += batch.size();
+                }
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    // One append to each file per batch: blobs first, so a record never points past them
+    private void write(List<Pending> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int blobTotal = 0;
+        for (Pending pending : batch) {
+            blobTotal += pending.blobLength();
+        }
+        long blobStart = thumbnailBytes;
+        if (blobTotal > 0) {
+            ByteBuffer blob = ByteBuffer.allocate(blobTotal);
+            long offset = blobStart;
+            for (Pending pending : batch) {
+                pending.thumbnailOffset = offset;
+                if (pending.thumbnail != null) {
+                    blob.put(pending.thumbnail);
+                }
+                if (pending.reference != null) {
+                    blob.put(pending.reference);
+                }
+                offset += pending.blobLength();
+            }
+            blob.flip();
+            writeFully(thumbnails, blob, blobStart);
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(batch.size() * recordBytes);
+        for (Pending pending : batch) {
+            writeRecord(pending, block);
+        }
+        block.flip();
+        writeFully(records, block, position(recordCount));
+        thumbnailBytes += blobTotal;
+        recordCount += batch.size();
+    }
+
+    private void writeRecord(Pending pending, ByteBuffer block) {
+        int start = block.position();
+        block.putLong(pending.timestamp);
+        block.putInt((int) Math.min(Integer.MAX_VALUE, pending.latencyMs));
+        block.putInt(pending.labelIndex);
+        block.putInt(pending.source);
+        block.putLong(pending.thumbnailOffset);
+        block.putInt(pending.thumbnail != null ? pending.thumbnail.length : 0);
+        byte[] label = pending.label != null ? pending.label.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int labelLength = Math.min(label.length, LABEL_BYTES - 1);
+        block.put((byte) labelLength);
+        block.put(label, 0, labelLength);
+        block.position(start + FIXED_BYTES_V1);
+        block.putInt(pending.reference != null ? pending.reference.length : 0);
+        for (float score : pending.scores) {
+            block.putFloat(score);
+        }
+    }
+
+    private Entry readEntry(long id, ByteBuffer block) {
+        int start = block.position();
+        long timestamp = block.getLong();
+        long latencyMs = block.getInt();
+        int labelIndex = block.getInt();
+        int source = block.getInt();
+        long thumbnailOffset = block.getLong();
+        int thumbnailLength = block.getInt();
+        int labelLength = block.get() & 0xFF;
+        String label = new String(block.array(), block.position(), labelLength, StandardCharsets.UTF_8);
+        block.position(start + FIXED_BYTES_V1);
+        int referenceLength = block.getInt();
+        float[] scores = new float[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            scores[i] = block.getFloat();
+        }
+        return new Entry(id, timestamp, label, labelIndex, scores, latencyMs, source,
+                thumbnailOffset, thumbnailLength, referenceLength);
+    }
+
+    private static int readMagic(File file) throws IOException {
+        if (file.length() < HEADER_BYTES) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt();
+        }
+    }
+
+    // Rewrites a version 1 history with an empty image reference in every record. The upgrade
+    // is written next to the old file and renamed over it, so a crash leaves one or the other.
+    private static void upgradeV1(File file) throws IOException {
+        File upgraded = new File(file.getPath() + ".upgrade");
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(upgraded)))) {
+            in.readInt();
+            int numClasses = in.readInt();
+            int oldRecordBytes = FIXED_BYTES_V1 + numClasses * 4;
+            long count = (in.length() - HEADER_BYTES) / oldRecordBytes;
+            out.writeInt(MAGIC);
+            out.writeInt(numClasses);
+            byte[] record = new byte[oldRecordBytes];
+            for (long i = 0; i < count; i++) {
+                in.readFully(record);
+                out.write(record, 0, FIXED_BYTES_V1);
+                out.writeInt(0);
+                out.write(record, FIXED_BYTES_V1, oldRecordBytes - FIXED_BYTES_V1);
+            }
+        }
+        if (!upgraded.renameTo(file)) {
+            throw new IOException("Cannot upgrade " + file);
+        }
+    }
+
+    private long position(int index) {
+        return HEADER_BYTES + (long) index * recordBytes;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of history file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static class Pending {
+        final long timestamp;
+        final String label;
+        final int labelIndex;
+        final float[] scores;
+        final long latencyMs;
+        final int source;
+        final byte[] reference;
+        final byte[] thumbnail;
+        long thumbnailOffset;
+
+        Pending(long timestamp, String label, int labelIndex, float[] scores, long latencyMs,
+                int source, byte[] reference, byte[] thumbnail) {
+            this.timestamp = timestamp;
+            this.label = label;
+            this.labelIndex = labelIndex;
+            this.scores = scores;
+            this.latencyMs = latencyMs;
+            this.source = source;
+            this.reference = reference;
+            this.thumbnail = thumbnail;
+        }
+
+        int blobLength() {
+            return (thumbnail != null ? thumbnail.length : 0) + (reference != null ? reference.length : 0);
+        }
+    }
+}
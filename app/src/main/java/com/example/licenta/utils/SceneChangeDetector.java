@@ -0,0 +1,53 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cheap check for whether the camera is still looking at the same thing. The luma plane is
+ * sampled on a coarse grid and compared with the grid of the last frame that was classified;
+ * a mean absolute difference under {@code threshold} (in 0-255 luma levels) counts as unchanged.
+ * Comparing against the last classified frame, not the previous one, lets slow pans add up.
+ */
+public class SceneChangeDetector {
+    private final int gridSize;
+    private final int threshold;
+    private final int[] current;
+    private final int[] reference;
+    private boolean hasReference;
+
+    public SceneChangeDetector(int gridSize, int threshold) {
+        this.gridSize = gridSize;
+        this.threshold = threshold;
+        current = new int[gridSize * gridSize];
+        reference = new int[gridSize * gridSize];
+    }
+
+    // Samples the frame and reports whether it differs from the reference frame
+    public boolean hasChanged(ByteBuffer yPlane, int width, int height, int rowStride) {
+        for (int gy = 0; gy < gridSize; gy++) {
+            int row = (int) ((gy + 0.5f) * height / gridSize) * rowStride;
+            for (int gx = 0; gx < gridSize; gx++) {
+                int column = (int) ((gx + 0.5f) * width / gridSize);
+                current[gy * gridSize + gx] = yPlane.get(row + column) & 0xFF;
+            }
+        }
+        if (!hasReference) {
+            return true;
+        }
+        int difference = 0;
+        for (int i = 0; i < current.length; i++) {
+            difference += Math.abs(current[i] - reference[i]);
+        }
+        return difference >= threshold * current.length;
+    }
+
+    // Makes the frame last passed to hasChanged the new reference, after it was classified
+    public void accept() {
+        System.arraycopy(current, 0, reference, 0, current.length);
+        hasReference = true;
+    }
+
+    public void reset() {
+        hasReference = false;
+    }
+}
@@ -5,43 +5,171 @@ import android.content.res.AssetFileDescriptor;
 import android.util.Log;
 
 import org.json.JSONObject;
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
-public class TFLiteModel {
-    public static final int IMG_SIZE = 224;
+public class TFLiteModel implements Classifier {
+    public static final String DEFAULT_MODEL_ASSET = "model.tflite";
     private Interpreter interpreter;
-    private Map<Integer, String> labels;
+    private final MappedByteBuffer modelBuffer;
+    private String modelVersion;
+    private String[] labels;
+    private BackendConfig backendConfig;
+    private final int inputBytes;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final DataType inputType;
+    private final float inputScale;
+    private final int inputZeroPoint;
+    private final int numClasses;
+    private final DataType outputType;
+    private final float outputScale;
+    private final int outputZeroPoint;
+    private final int outputBytes;
+    // Output buffers per batch size, so repeated batches of one size never reallocate
+    private final Map<Integer, BatchOutput> batchOutputs = new HashMap<>();
+    private final float[] scores;
+    private int batchSize = 1;
+    private ByteBuffer inputBuffer;
+    private FloatBuffer inputFloats;
 
-    public TFLiteModel(Context context) {
+    public TFLiteModel(Context context) throws IOException {
+        this(context, BackendConfig.defaultConfig());
+    }
+
+    public TFLiteModel(Context context, BackendConfig config) throws IOException {
+        this(context, mapAsset(context, DEFAULT_MODEL_ASSET), config);
+    }
+
+    // Another model variant bundled in the assets, e.g. for benchmarking
+    public TFLiteModel(Context context, String assetName, BackendConfig config) throws IOException {
+        this(context, mapAsset(context, assetName), config);
+    }
+
+    // A model variant in app storage, mapped the same way as the bundled one
+    public TFLiteModel(Context context, File modelFile, BackendConfig config) throws IOException {
+        this(context, mapFile(modelFile), config);
+    }
+
+    private TFLiteModel(Context context, MappedByteBuffer buffer, BackendConfig config) throws IOException {
+        modelBuffer = buffer;
+        interpreter = createInterpreter(modelBuffer, config);
+
+        // Input is [batch, height, width, 3]; output is [batch, numClasses], read back through reused buffers
+        Tensor inputTensor = interpreter.getInputTensor(0);
+        int[] inputShape = inputTensor.shape();
+        inputHeight = inputShape[1];
+        inputWidth = inputShape[2];
+        inputBytes = inputTensor.numBytes();
+        inputType = checkSupported(inputTensor.dataType());
+        inputScale = inputTensor.quantizationParams().getScale();
+        inputZeroPoint = inputTensor.quantizationParams().getZeroPoint();
+
+        Tensor outputTensor = interpreter.getOutputTensor(0);
+        int[] outputShape = outputTensor.shape();
+        numClasses = outputShape[outputShape.length - 1];
+        outputType = checkSupported(outputTensor.dataType());
+        outputScale = outputTensor.quantizationParams().getScale();
+        outputZeroPoint = outputTensor.quantizationParams().getZeroPoint();
+        outputBytes = outputTensor.numBytes();
+        scores = new float[numClasses];
+
+        // Load labels from assets, one per output class
+        loadLabels(context);
+    }
+
+    // The mapping stays valid after the file is closed
+    private static MappedByteBuffer mapAsset(Context context, String assetName) throws IOException {
+        try (AssetFileDescriptor fileDescriptor = context.getAssets().openFd(assetName);
+             FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
+            return inputStream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    fileDescriptor.getStartOffset(), fileDescriptor.getDeclaredLength());
+        }
+    }
+
+    private static MappedByteBuffer mapFile(File modelFile) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(modelFile)) {
+            FileChannel channel = inputStream.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // Another interpreter on the same memory-mapped model, sharing its labels and version
+    private TFLiteModel(TFLiteModel source, BackendConfig config) {
+        modelBuffer = source.modelBuffer;
+        interpreter = createInterpreter(modelBuffer, config);
+        modelVersion = source.getModelVersion();
+        labels = source.labels;
+        inputBytes = source.inputBytes;
+        inputWidth = source.inputWidth;
+        inputHeight = source.inputHeight;
+        inputType = source.inputType;
+        inputScale = source.inputScale;
+        inputZeroPoint = source.inputZeroPoint;
+        numClasses = source.numClasses;
+        outputType = source.outputType;
+        outputScale = source.outputScale;
+        outputZeroPoint = source.outputZeroPoint;
+        outputBytes = source.outputBytes;
+        scores = new float[numClasses];
+    }
+
+    // Creates an independent interpreter for use on another thread. The model file is not
+    // mapped or parsed again; only the interpreter's own tensors are allocated.
+    public TFLiteModel copy(BackendConfig config) {
+        return new TFLiteModel(this, config);
+    }
+
+    private Interpreter createInterpreter(MappedByteBuffer buffer, BackendConfig config) {
         try {
-            // Load model from assets
-            AssetFileDescriptor fileDescriptor = context.getAssets().openFd("model.tflite");
-            FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-            FileChannel fileChannel = inputStream.getChannel();
-            long startOffset = fileDescriptor.getStartOffset();
-            long declaredLength = fileDescriptor.getDeclaredLength();
-            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
-            interpreter = new Interpreter(buffer);
-
-            // Load labels from assets
-            loadLabels(context);
-        } catch (IOException e) {
-            e.printStackTrace();
+            Interpreter created = new Interpreter(buffer, config.toOptions());
+            backendConfig = config;
+            return created;
+        } catch (RuntimeException e) {
+            if (!config.useNnapi) {
+                throw e;
+            }
+            // No usable NNAPI driver on this device, run on the CPU instead
+            Log.w("TFLiteModel", "NNAPI unavailable, falling back to CPU", e);
+            backendConfig = config.withoutNnapi();
+            return new Interpreter(buffer, backendConfig.toOptions());
+        }
+    }
+
+    public BackendConfig getBackendConfig() {
+        return backendConfig;
+    }
+
+    @Override
+    public String getDescription() {
+        return "TFLite " + backendConfig;
+    }
+
+    // Float models and uint8/int8 quantized models are handled; anything else is rejected at load
+    private static DataType checkSupported(DataType type) throws IOException {
+        if (type != DataType.FLOAT32 && type != DataType.UINT8 && type != DataType.INT8) {
+            throw new IOException("Unsupported tensor type " + type);
         }
+        return type;
     }
 
     private void loadLabels(Context context) {
-        labels = new HashMap<>();
+        labels = new String[numClasses];
         try {
             BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open("labels.json")));
             StringBuilder jsonBuilder = new StringBuilder();
@@ -53,7 +181,12 @@ public class TFLiteModel {
             Iterator<String> keys = jsonObject.keys();
             while (keys.hasNext()) {
                 String key = keys.next();
-                labels.put(Integer.parseInt(key), jsonObject.getString(key));
+                int classIndex = Integer.parseInt(key);
+                if (classIndex >= 0 && classIndex < numClasses) {
+                    labels[classIndex] = jsonObject.getString(key);
+                } else {
+                    Log.w("TFLiteModel", "Label " + key + " has no matching model output");
+                }
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -61,54 +194,218 @@ public class TFLiteModel {
         }
     }
 
-    public PredictionResult predict(float[] input) {
-        // Ensure input is reshaped to [1, IMG_SIZE, IMG_SIZE, 3]
-        float[][][][] inputTensor = new float[1][IMG_SIZE][IMG_SIZE][3];
-        for (int i = 0; i < IMG_SIZE; i++) {
-            for (int j = 0; j < IMG_SIZE; j++) {
-                inputTensor[0][i][j][0] = input[(i * IMG_SIZE + j) * 3];
-                inputTensor[0][i][j][1] = input[(i * IMG_SIZE + j) * 3 + 1];
-                inputTensor[0][i][j][2] = input[(i * IMG_SIZE + j) * 3 + 2];
-            }
+    // Allocates a native-order direct buffer matching the input tensor; callers keep it
+    // and refill it for every prediction
+    @Override
+    public ByteBuffer newInputBuffer() {
+        return ByteBuffer.allocateDirect(inputBytes).order(ByteOrder.nativeOrder());
+    }
+
+    // Creates a preprocessor producing tensors in this model's input size, layout and type
+    @Override
+    public ImagePreprocessor newPreprocessor() {
+        if (inputType == DataType.FLOAT32) {
+            return new ImagePreprocessor(inputWidth, inputHeight);
         }
+        return ImagePreprocessor.quantized(inputWidth, inputHeight, inputType == DataType.INT8,
+                inputScale, inputZeroPoint);
+    }
 
-        // Adjust output shape according to model's output shape [1, 5]
-        float[][] output = new float[1][5];
-        long startTime = System.currentTimeMillis();
-        interpreter.run(inputTensor, output);
-        long endTime = System.currentTimeMillis();
+    public boolean isQuantized() {
+        return inputType != DataType.FLOAT32;
+    }
+
+    @Override
+    public int getInputWidth() {
+        return inputWidth;
+    }
+
+    @Override
+    public int getInputHeight() {
+        return inputHeight;
+    }
 
-        // Find the index with the highest probability
-        int maxIndex = 0;
-        for (int i = 1; i < output[0].length; i++) {
-            if (output[0][i] > output[0][maxIndex]) {
-                maxIndex = i;
+    @Override
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    @Override
+    public String getLabel(int classIndex) {
+        return labels[classIndex];
+    }
+
+    // Content hash of the model file, computed on first use; identifies whose scores a cache holds
+    @Override
+    public synchronized String getModelVersion() {
+        if (modelVersion == null) {
+            modelVersion = new ContentHasher().update(modelBuffer.duplicate()).digest();
+        }
+        return modelVersion;
+    }
+
+    // Runs one inference on a blank image so the first real prediction does not pay
+    // for the interpreter's lazy tensor allocation
+    public synchronized void warmUp() {
+        predictInto(getInputBuffer(), scores);
+    }
+
+    // Kept for callers that still build a float[] of values in [0, 1]; copies (and quantizes,
+    // for quantized models) into the reused input buffer
+    public synchronized PredictionResult predict(float[] input) {
+        ByteBuffer inputBuffer = getInputBuffer();
+        if (inputType == DataType.FLOAT32) {
+            inputFloats.rewind();
+            inputFloats.put(input);
+        } else {
+            int min = inputType == DataType.INT8 ? -128 : 0;
+            for (int i = 0; i < input.length; i++) {
+                int q = inputScale == 0 ? Math.round(input[i] * 255) + min
+                        : Math.round(input[i] / inputScale) + inputZeroPoint;
+                inputBuffer.put(i, (byte) Math.max(min, Math.min(min + 255, q)));
             }
         }
+        return predict(inputBuffer);
+    }
+
+    @Override
+    public synchronized PredictionResult predict(ByteBuffer input) {
+        long latency = predictInto(input, scores);
+        return toResult(scores, 0, latency);
+    }
+
+    // Builds a result from numClasses scores starting at offset, e.g. scores read from a cache
+    @Override
+    public PredictionResult toResult(float[] scores, int offset, long latency) {
+        float[] copy = new float[numClasses];
+        System.arraycopy(scores, offset, copy, 0, numClasses);
+        return new PredictionResult(copy, labels, latency);
+    }
+
+    // Runs the model on a buffer from newInputBuffer() and writes the class scores into
+    // the caller's array. Nothing is allocated per call. Returns the latency in ms.
+    @Override
+    public synchronized long predictInto(ByteBuffer input, float[] scoresOut) {
+        if (input.capacity() != inputBytes) {
+            throw new IllegalArgumentException("Expected an input buffer of " + inputBytes
+                    + " bytes, got " + input.capacity());
+        }
+        if (scoresOut.length < numClasses) {
+            throw new IllegalArgumentException("Expected room for " + numClasses + " scores");
+        }
+        BatchOutput output = getBatchOutput(1);
+        resizeBatch(1);
+        input.rewind();
+        output.bytes.rewind();
+        long startTime = System.nanoTime();
+        interpreter.run(input, output.bytes);
+        long endTime = System.nanoTime();
+
+        readScores(output, scoresOut, numClasses);
+        return (endTime - startTime) / 1_000_000;
+    }
+
+    // Allocates a buffer holding batchSize consecutive input images
+    @Override
+    public ByteBuffer newBatchInputBuffer(int batchSize) {
+        return ByteBuffer.allocateDirect(inputBytes * batchSize).order(ByteOrder.nativeOrder());
+    }
+
+    // Classifies batchSize images from a buffer filled via ImagePreprocessor's imageIndex
+    // overload with a single interpreter run. The reported latency is for the whole batch.
+    @Override
+    public synchronized PredictionResult[] predictBatch(ByteBuffer input, int batchSize) {
+        float[] batchScores = getBatchOutput(batchSize).scores;
+        long latency = predictBatchInto(input, batchSize, batchScores);
+        PredictionResult[] results = new PredictionResult[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            results[i] = toResult(batchScores, i * numClasses, latency);
+        }
+        return results;
+    }
+
+    // Batched form of predictInto: scores for image i start at scoresOut[i * numClasses]
+    @Override
+    public synchronized long predictBatchInto(ByteBuffer input, int batchSize, float[] scoresOut) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (input.capacity() != inputBytes * batchSize) {
+            throw new IllegalArgumentException("Expected an input buffer of " + inputBytes * batchSize
+                    + " bytes, got " + input.capacity());
+        }
+        if (scoresOut.length < numClasses * batchSize) {
+            throw new IllegalArgumentException("Expected room for " + numClasses * batchSize + " scores");
+        }
+        BatchOutput output = getBatchOutput(batchSize);
+        resizeBatch(batchSize);
+        input.rewind();
+        output.bytes.rewind();
+        long startTime = System.nanoTime();
+        interpreter.run(input, output.bytes);
+        long endTime = System.nanoTime();
+
+        readScores(output, scoresOut, numClasses * batchSize);
+        return (endTime - startTime) / 1_000_000;
+    }
+
+    // Resizes the input tensor to [batchSize, height, width, 3]; a no-op when it already has that shape
+    private void resizeBatch(int size) {
+        if (size == batchSize) {
+            return;
+        }
+        interpreter.resizeInput(0, new int[]{size, inputHeight, inputWidth, 3});
+        interpreter.allocateTensors();
+        batchSize = size;
+    }
 
-        // Calculate latency
-        long latency = endTime - startTime;
+    private BatchOutput getBatchOutput(int size) {
+        BatchOutput output = batchOutputs.get(size);
+        if (output == null) {
+            output = new BatchOutput(outputBytes * size, numClasses * size);
+            batchOutputs.put(size, output);
+        }
+        return output;
+    }
 
-        // Map the index to the corresponding label and get the accuracy
-        String label = labels.get(maxIndex);
-        float accuracy = output[0][maxIndex] * 100; // Convert to percentage
+    // Dequantizes uint8/int8 outputs so callers always see float scores
+    private void readScores(BatchOutput output, float[] scoresOut, int count) {
+        if (outputType == DataType.FLOAT32) {
+            output.floats.rewind();
+            output.floats.get(scoresOut, 0, count);
+            return;
+        }
+        float scale = outputScale == 0 ? 1 / 255.0f : outputScale;
+        for (int i = 0; i < count; i++) {
+            int q = outputType == DataType.UINT8 ? output.bytes.get(i) & 0xFF : output.bytes.get(i);
+            scoresOut[i] = (q - outputZeroPoint) * scale;
+        }
+    }
 
-        return new PredictionResult(label, accuracy, latency);
+    private ByteBuffer getInputBuffer() {
+        if (inputBuffer == null) {
+            inputBuffer = newInputBuffer();
+            if (inputType == DataType.FLOAT32) {
+                inputFloats = inputBuffer.asFloatBuffer();
+            }
+        }
+        return inputBuffer;
     }
 
-    public void close() {
+    @Override
+    public synchronized void close() {
         interpreter.close();
     }
 
-    public static class PredictionResult {
-        public final String label;
-        public final float accuracy;
-        public final long latency;
+    private static class BatchOutput {
+        final ByteBuffer bytes;
+        final FloatBuffer floats;
+        final float[] scores;
 
-        public PredictionResult(String label, float accuracy, long latency) {
-            this.label = label;
-            this.accuracy = accuracy;
-            this.latency = latency;
+        BatchOutput(int byteCount, int scoreCount) {
+            bytes = ByteBuffer.allocateDirect(byteCount).order(ByteOrder.nativeOrder());
+            floats = bytes.asFloatBuffer();
+            scores = new float[scoreCount];
         }
     }
 }
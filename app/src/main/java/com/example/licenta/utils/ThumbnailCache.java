@@ -0,0 +1,346 @@
+package com.example.licenta.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Thumbnails by key, from a byte-bounded LRU in memory, then a directory of encoded files, and
+ * only then from their {@link Source}, which usually decodes the original image. Loads run on a
+ * worker executor and callbacks on a delivery executor (the UI thread in the app). Concurrent
+ * requests for one key share a single load, and a request cancelled before its load starts,
+ * e.g. for a row that scrolled off screen, costs nothing; once a load has started it finishes
+ * and is cached for the next request. The disk tier is bounded too and drops the least recently
+ * used files first.
+ */
+public class ThumbnailCache<T> {
+
+    public interface Codec<T> {
+        // Memory held by a decoded thumbnail
+        int sizeOf(T thumbnail);
+
+        byte[] encode(T thumbnail) throws IOException;
+
+        T decode(byte[] data) throws IOException;
+    }
+
+    public interface Source<T> {
+        T load() throws IOException;
+    }
+
+    public interface Callback<T> {
+        // thumbnail is null when it could not be loaded
+        void onThumbnail(T thumbnail);
+    }
+
+    private final Codec<T> codec;
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+    private final Executor worker;
+    private final Executor delivery;
+    private final LinkedHashMap<String, T> memory = new LinkedHashMap<>(16, 0.75f, true);
+    // File name to size, least recently used first
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Load> inFlight = new HashMap<>();
+    private long memoryBytes;
+    private long diskBytes;
+    private long memoryHits;
+    private long diskHits;
+    private long sourceLoads;
+    private long skippedLoads;
+
+    /**
+     * directory may be null for a memory-only cache. Callbacks for memory hits run on the
+     * calling thread before load() returns, so a cached thumbnail is shown without a blank frame.
+     */
+    public ThumbnailCache(Codec<T> codec, long maxMemoryBytes, File directory, long maxDiskBytes,
+                          Executor worker, Executor delivery) {
+        this.codec = codec;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.worker = worker;
+        this.delivery = delivery;
+        if (directory != null && (directory.isDirectory() || directory.mkdirs())) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        return Long.compare(a.lastModified(), b.lastModified());
+                    }
+                });
+                for (File file : files) {
+                    if (file.getName().endsWith(".tmp")) {
+                        file.delete();
+                        continue;
+                    }
+                    diskIndex.put(file.getName(), file.length());
+                    diskBytes += file.length();
+                }
+                trimDisk();
+            }
+        }
+    }
+
+    /**
+     * Delivers the thumbnail for key to callback. persist says whether a freshly loaded
+     * thumbnail is worth writing to disk; pass false when the source is already cheap to read.
+     */
+    public Request load(String key, boolean persist, Source<T> source, Callback<T> callback) {
+        Request request = new Request(callback);
+        T cached;
+        synchronized (this) {
+            cached = memory.get(key);
+            if (cached == null) {
+                Load load = inFlight.get(key);
+                if (load == null) {
+                    load = new Load(key, persist, source);
+                    inFlight.put(key, load);
+                    worker.execute(load);
+                }
+                load.requests.add(request);
+                request.load = load;
+                return request;
+            }
+            memoryHits++;
+        }
+        callback.onThumbnail(cached);
+        return request;
+    }
+
+    // The memory tier only, for callers that must not wait
+    public synchronized T getIfCached(String key) {
+        return memory.get(key);
+    }
+
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    // Thumbnails that had to come from their source
+    public synchronized long getSourceLoads() {
+        return sourceLoads;
+    }
+
+    // Loads dropped because every request for them was cancelled before they started
+    public synchronized long getSkippedLoads() {
+        return skippedLoads;
+    }
+
+    // Runs on the worker; everything but the map updates happens outside the lock
+    private void run(Load load) {
+        synchronized (this) {
+            if (load.requests.isEmpty()) {
+                inFlight.remove(load.key);
+                skippedLoads++;
+                return;
+            }
+        }
+        String fileName = directory != null ? fileName(load.key) : null;
+        T thumbnail = fileName != null ? readDisk(fileName) : null;
+        if (thumbnail == null) {
+            try {
+                thumbnail = load.source.load();
+            } catch (IOException | RuntimeException e) {
+                // e.g. a SecurityException for a content URI whose grant was revoked; the
+                // requests still have to be answered, or later ones would join a dead load
+                thumbnail = null;
+            }
+            synchronized (this) {
+                sourceLoads++;
+            }
+            if (thumbnail != null && fileName != null && load.persist) {
+                writeDisk(fileName, thumbnail);
+            }
+        }
+
+        final List<Request> requests;
+        synchronized (this) {
+            inFlight.remove(load.key);
+            if (thumbnail != null) {
+                putMemory(load.key, thumbnail);
+            }
+            requests = new ArrayList<>(load.requests);
+            load.requests.clear();
+        }
+        final T result = thumbnail;
+        delivery.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Request request : requests) {
+                    request.deliver(result);
+                }
+            }
+        });
+    }
+
+    private void putMemory(String key, T thumbnail) {
+        T previous = memory.put(key, thumbnail);
+        if (previous != null) {
+            memoryBytes -= codec.sizeOf(previous);
+        }
+        memoryBytes += codec.sizeOf(thumbnail);
+        Iterator<T> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= codec.sizeOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private T readDisk(String fileName) {
+        synchronized (this) {
+            if (diskIndex.get(fileName) == null) {
+                return null;
+            }
+        }
+        File file = new File(directory, fileName);
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            byte[] data = new byte[(int) input.length()];
+            input.readFully(data);
+            T thumbnail = codec.decode(data);
+            if (thumbnail != null) {
+                // Keeps the recency order across restarts, where the index is rebuilt from it
+                file.setLastModified(System.currentTimeMillis());
+                synchronized (this) {
+                    diskHits++;
+                }
+            }
+            return thumbnail;
+        } catch (IOException e) {
+            synchronized (this) {
+                Long size = diskIndex.remove(fileName);
+                diskBytes -= size != null ? size : 0;
+            }
+            file.delete();
+            return null;
+        }
+    }
+
+    // Written under a temporary name and renamed, so a crash never leaves half a thumbnail
+    private void writeDisk(String fileName, T thumbnail) {
+        File file = new File(directory, fileName);
+        File temporary = new File(directory, fileName + ".tmp");
+        try {
+            byte[] data = codec.encode(thumbnail);
+            try (FileOutputStream output = new FileOutputStream(temporary)) {
+                output.write(data);
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Cannot rename " + temporary);
+            }
+            synchronized (this) {
+                Long previous = diskIndex.put(fileName, (long) data.length);
+                diskBytes += data.length - (previous != null ? previous : 0);
+                trimDisk();
+            }
+        } catch (IOException e) {
+            // A broken disk tier only costs cache hits
+            temporary.delete();
+        }
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            diskBytes -= entry.getValue();
+            eldest.remove();
+            new File(directory, entry.getKey()).delete();
+        }
+    }
+
+    // Keys may hold any characters, file names only hex digits
+    private static String fileName(String key) {
+        ContentHasher hasher = new ContentHasher();
+        for (int i = 0; i < key.length(); i++) {
+            hasher.update(key.charAt(i));
+        }
+        return hasher.update(key.length()).digest();
+    }
+
+    // Hands the thumbnail to its callback unless cancelled first
+    public final class Request {
+        private final Callback<T> callback;
+        private Load load;
+        private boolean cancelled;
+        private boolean delivered;
+
+        Request(Callback<T> callback) {
+            this.callback = callback;
+        }
+
+        // Safe to call more than once, and after delivery
+        public void cancel() {
+            synchronized (ThumbnailCache.this) {
+                cancelled = true;
+                if (load != null) {
+                    load.requests.remove(this);
+                }
+            }
+        }
+
+        // False for memory hits, which were delivered before load() returned
+        public boolean isPending() {
+            synchronized (ThumbnailCache.this) {
+                return load != null && !cancelled && !delivered;
+            }
+        }
+
+        private void deliver(T thumbnail) {
+            synchronized (ThumbnailCache.this) {
+                if (cancelled) {
+                    return;
+                }
+                delivered = true;
+            }
+            callback.onThumbnail(thumbnail);
+        }
+    }
+
+    private final class Load implements Runnable {
+        final String key;
+        final boolean persist;
+        final Source<T> source;
+        final List<Request> requests = new ArrayList<>(1);
+
+        Load(String key, boolean persist, Source<T> source) {
+            this.key = key;
+            this.persist = persist;
+            this.source = source;
+        }
+
+        @Override
+        public void run() {
+            ThumbnailCache.this.run(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.licenta.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import com.example.licenta.R;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The app's one {@link ThumbnailCache} of Bitmaps, stored on disk as JPEG in the cache
+ * directory, and the glue that binds a thumbnail to an ImageView. A view remembers its pending
+ * request in a tag, so binding it again or unbinding it when it scrolls off screen cancels
+ * whatever it was still waiting for.
+ */
+public final class Thumbnails {
+    private static final int LOAD_THREADS = 2;
+    private static final long DISK_BYTES = 16 * 1024 * 1024;
+    private static final int JPEG_QUALITY = 80;
+
+    private static ThumbnailCache<Bitmap> cache;
+
+    private Thumbnails() {
+    }
+
+    public static synchronized ThumbnailCache<Bitmap> getCache(Context context) {
+        if (cache == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            // An eighth of the heap, the usual share for an image memory cache
+            long memoryBytes = Runtime.getRuntime().maxMemory() / 8;
+            cache = new ThumbnailCache<>(new JpegCodec(), memoryBytes,
+                    new File(context.getApplicationContext().getCacheDir(), "thumbnails"), DISK_BYTES,
+                    Executors.newFixedThreadPool(LOAD_THREADS), new Executor() {
+                        @Override
+                        public void execute(Runnable command) {
+                            mainHandler.post(command);
+                        }
+                    });
+        }
+        return cache;
+    }
+
+    // Called when memory runs low; the disk tier stays
+    public static synchronized void trimMemory() {
+        if (cache != null) {
+            cache.clearMemory();
+        }
+    }
+
+    // Runs on the UI thread. The view is cleared until the thumbnail arrives.
+    public static void bind(final ImageView view, String key, boolean persist, ThumbnailCache.Source<Bitmap> source) {
+        unbind(view);
+        view.setImageBitmap(null);
+        ThumbnailCache<Bitmap>.Request request = getCache(view.getContext()).load(key, persist, source,
+                new ThumbnailCache.Callback<Bitmap>() {
+                    @Override
+                    public void onThumbnail(Bitmap thumbnail) {
+                        view.setTag(R.id.thumbnail_request, null);
+                        view.setImageBitmap(thumbnail);
+                    }
+                });
+        if (request.isPending()) {
+            view.setTag(R.id.thumbnail_request, request);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void unbind(ImageView view) {
+        Object request = view.getTag(R.id.thumbnail_request);
+        if (request != null) {
+            ((ThumbnailCache<Bitmap>.Request) request).cancel();
+            view.setTag(R.id.thumbnail_request, null);
+        }
+    }
+
+    private static final class JpegCodec implements ThumbnailCache.Codec<Bitmap> {
+        @Override
+        public int sizeOf(Bitmap thumbnail) {
+            return thumbnail.getAllocationByteCount();
+        }
+
+        @Override
+        public byte[] encode(Bitmap thumbnail) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            return out.toByteArray();
+        }
+
+        @Override
+        public Bitmap decode(byte[] data) throws IOException {
+            Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+            if (bitmap == null) {
+                throw new IOException("Corrupt thumbnail");
+            }
+            return bitmap;
+        }
+    }
+}
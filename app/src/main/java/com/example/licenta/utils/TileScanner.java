@@ -0,0 +1,240 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Classifies a photo as a grid of overlapping tiles as well as as a whole, so that a small
+ * lesion fills a tile instead of a few pixels of a squashed 224x224 view. Tiles start at the
+ * model's input size and grow just enough to keep the grid within {@code maxTiles}; they run
+ * in batches, centre first, and scanning stops once {@code budgetNanos} is spent. Disease
+ * scores are the maximum over all views and the healthy score the minimum, then renormalized,
+ * so one clearly diseased tile is enough to flag the leaf.
+ */
+public class TileScanner {
+    private final Classifier classifier;
+    private final ImagePreprocessor preprocessor;
+    private final int batchSize;
+    private final int maxTiles;
+    private final float overlap;
+    private final long budgetNanos;
+    private final String healthyLabel;
+    private final ByteBuffer batchInput;
+    private final float[] batchScores;
+
+    public TileScanner(Classifier classifier, int batchSize, int maxTiles, float overlap,
+                       long budgetNanos, String healthyLabel) {
+        if (overlap < 0 || overlap >= 1) {
+            throw new IllegalArgumentException("overlap must be in [0, 1)");
+        }
+        this.classifier = classifier;
+        this.preprocessor = classifier.newPreprocessor();
+        this.batchSize = batchSize;
+        this.maxTiles = Math.max(1, maxTiles);
+        this.overlap = overlap;
+        this.budgetNanos = budgetNanos;
+        this.healthyLabel = healthyLabel;
+        batchInput = classifier.newBatchInputBuffer(batchSize);
+        batchScores = new float[batchSize * classifier.getNumClasses()];
+    }
+
+    // One square region of the source image, at grid position (column, row)
+    public static class Tile {
+        public final int left;
+        public final int top;
+        public final int size;
+        public final int column;
+        public final int row;
+
+        Tile(int left, int top, int size, int column, int row) {
+            this.left = left;
+            this.top = top;
+            this.size = size;
+            this.column = column;
+            this.row = row;
+        }
+    }
+
+    public static class Result {
+        // Aggregated over the whole image and every tile that was scanned. The scores rank the
+        // classes, but as a mix of maxima and a minimum they are not probabilities
+        public final PredictionResult prediction;
+        public final int columns;
+        public final int rows;
+        public final List<Tile> tiles;
+        // Per grid cell (row * columns + column): 1 - healthy score (the top score if there is no
+        // healthy class), or -1 if the cell was not scanned
+        public final float[] heat;
+        public final int tilesScanned;
+        // True when the time budget ran out before every tile was scanned
+        public final boolean truncated;
+        public final long elapsedMs;
+
+        Result(PredictionResult prediction, int columns, int rows, List<Tile> tiles, float[] heat,
+               int tilesScanned, boolean truncated, long elapsedMs) {
+            this.prediction = prediction;
+            this.columns = columns;
+            this.rows = rows;
+            this.tiles = tiles;
+            this.heat = heat;
+            this.tilesScanned = tilesScanned;
+            this.truncated = truncated;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    // Lays out a grid of equal square tiles covering the image edge to edge
+    public List<Tile> planTiles(int width, int height) {
+        int inputSize = Math.max(classifier.getInputWidth(), classifier.getInputHeight());
+        int maxSize = Math.min(width, height);
+        int size = Math.min(inputSize, maxSize);
+        while (true) {
+            int columns = count(width, size);
+            int rows = count(height, size);
+            if (columns * rows <= maxTiles || size >= maxSize) {
+                List<Tile> tiles = new ArrayList<>(columns * rows);
+                for (int row = 0; row < rows; row++) {
+                    for (int column = 0; column < columns; column++) {
+                        tiles.add(new Tile(offset(width, size, columns, column),
+                                offset(height, size, rows, row), size, column, row));
+                    }
+                }
+                return tiles;
+            }
+            size = Math.min(maxSize, (int) Math.ceil(size * 1.25));
+        }
+    }
+
+    public synchronized Result scan(int[] argb, int width, int height) {
+        long startTime = System.nanoTime();
+        int numClasses = classifier.getNumClasses();
+        List<Tile> tiles = planTiles(width, height);
+        int columns = tiles.get(tiles.size() - 1).column + 1;
+        int rows = tiles.get(tiles.size() - 1).row + 1;
+
+        // Centre tiles first, so a truncated scan still covers the middle of the photo
+        List<Tile> order = new ArrayList<>(tiles);
+        final float centerX = width / 2f;
+        final float centerY = height / 2f;
+        Collections.sort(order, new Comparator<Tile>() {
+            @Override
+            public int compare(Tile a, Tile b) {
+                return Float.compare(distance(a, centerX, centerY), distance(b, centerX, centerY));
+            }
+        });
+
+        float[] max = new float[numClasses];
+        float[] min = new float[numClasses];
+        float[] heat = new float[columns * rows];
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(heat, -1);
+        int healthyIndex = -1;
+
+        // View 0 is the whole image, as the plain single-image path sees it
+        int total = order.size() + 1;
+        int next = 0;
+        int scanned = 0;
+        boolean truncated = false;
+        while (next < total) {
+            if (next > 0 && System.nanoTime() - startTime > budgetNanos) {
+                truncated = true;
+                break;
+            }
+            int count = Math.min(batchSize, total - next);
+            for (int i = 0; i < count; i++) {
+                int view = next + i;
+                if (view == 0) {
+                    preprocessor.preprocessRegion(argb, width, height, 0, 0, width, height, batchInput, i);
+                } else {
+                    Tile tile = order.get(view - 1);
+                    preprocessor.preprocessRegion(argb, width, height, tile.left, tile.top,
+                            tile.size, tile.size, batchInput, i);
+                }
+            }
+            classifier.predictBatchInto(inputFor(count), count, batchScores);
+            if (healthyIndex < 0 && next == 0) {
+                healthyIndex = findLabel(classifier.toResult(batchScores, 0, 0), healthyLabel);
+            }
+            for (int i = 0; i < count; i++) {
+                int offset = i * numClasses;
+                for (int c = 0; c < numClasses; c++) {
+                    max[c] = Math.max(max[c], batchScores[offset + c]);
+                    min[c] = Math.min(min[c], batchScores[offset + c]);
+                }
+                int view = next + i;
+                if (view > 0) {
+                    Tile tile = order.get(view - 1);
+                    heat[tile.row * columns + tile.column] = healthyIndex >= 0
+                            ? 1 - batchScores[offset + healthyIndex] : maxScore(batchScores, offset, numClasses);
+                    scanned++;
+                }
+            }
+            next += count;
+        }
+
+        float[] aggregated = new float[numClasses];
+        float sum = 0;
+        for (int c = 0; c < numClasses; c++) {
+            aggregated[c] = c == healthyIndex ? min[c] : max[c];
+            sum += aggregated[c];
+        }
+        for (int c = 0; c < numClasses && sum > 0; c++) {
+            aggregated[c] /= sum;
+        }
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        return new Result(classifier.toResult(aggregated, 0, elapsedMs), columns, rows, tiles, heat,
+                scanned, truncated, elapsedMs);
+    }
+
+    // Tiles needed to cover length with tiles of the given size overlapping by the overlap share
+    private int count(int length, int size) {
+        if (length <= size) {
+            return 1;
+        }
+        int stride = Math.max(1, Math.round(size * (1 - overlap)));
+        return (length - size + stride - 1) / stride + 1;
+    }
+
+    // Spreads the tiles evenly so the first touches the start and the last the end of the image
+    private static int offset(int length, int size, int count, int index) {
+        return count == 1 ? (length - size) / 2 : (int) ((long) (length - size) * index / (count - 1));
+    }
+
+    private ByteBuffer inputFor(int count) {
+        if (count == batchSize) {
+            return batchInput;
+        }
+        ByteBuffer view = batchInput.duplicate();
+        view.position(0);
+        view.limit(batchInput.capacity() / batchSize * count);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private static float distance(Tile tile, float centerX, float centerY) {
+        float dx = tile.left + tile.size / 2f - centerX;
+        float dy = tile.top + tile.size / 2f - centerY;
+        return dx * dx + dy * dy;
+    }
+
+    private static int findLabel(PredictionResult result, String label) {
+        for (int i = 0; i < result.getNumClasses(); i++) {
+            if (label != null && label.equalsIgnoreCase(result.getLabel(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static float maxScore(float[] scores, int offset, int count) {
+        float max = scores[offset];
+        for (int i = 1; i < count; i++) {
+            max = Math.max(max, scores[offset + i]);
+        }
+        return max;
+    }
+}
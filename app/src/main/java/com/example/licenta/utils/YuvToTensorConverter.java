@@ -0,0 +1,150 @@
+package com.example.licenta.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts YUV_420_888 camera frames straight into the model's input tensor. Center-crop,
+ * nearest-neighbour scaling and rotation are folded into per-pixel offset tables that are
+ * only rebuilt when the frame geometry changes, so each frame is a single pass over the
+ * output pixels with no intermediate Bitmaps or arrays.
+ */
+public class YuvToTensorConverter {
+    private final ImagePreprocessor preprocessor;
+    private final int outputWidth;
+    private final int outputHeight;
+    private final int[] yOffsets;
+    private final int[] uvOffsets;
+
+    private int width = -1;
+    private int height = -1;
+    private int rotationDegrees = -1;
+    private int yRowStride = -1;
+    private int uvRowStride = -1;
+    private int uvPixelStride = -1;
+
+    public YuvToTensorConverter(ImagePreprocessor preprocessor) {
+        this.preprocessor = preprocessor;
+        this.outputWidth = preprocessor.getWidth();
+        this.outputHeight = preprocessor.getHeight();
+        yOffsets = new int[outputWidth * outputHeight];
+        uvOffsets = new int[outputWidth * outputHeight];
+    }
+
+    /**
+     * Writes the center crop of the frame, rotated upright by {@code rotationDegrees}, into
+     * {@code out} in the preprocessor's tensor format (absolute puts starting at index 0).
+     */
+    public void convert(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                        int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                        int rotationDegrees, ByteBuffer out) {
+        ensureOffsets(width, height, yRowStride, uvRowStride, uvPixelStride, rotationDegrees);
+
+        int pixelCount = outputWidth * outputHeight;
+        for (int i = 0; i < pixelCount; i++) {
+            int y = yPlane.get(yOffsets[i]) & 0xFF;
+            int u = (uPlane.get(uvOffsets[i]) & 0xFF) - 128;
+            int v = (vPlane.get(uvOffsets[i]) & 0xFF) - 128;
+
+            // Full-range BT.601, fixed point with 10 fractional bits
+            int r = clamp(y + ((1436 * v) >> 10));
+            int g = clamp(y - ((352 * u + 731 * v) >> 10));
+            int b = clamp(y + ((1815 * u) >> 10));
+            preprocessor.writePixel(out, i, r, g, b);
+        }
+    }
+
+    /**
+     * Same crop and rotation as {@link #convert}, as packed ARGB pixels for a thumbnail. Only
+     * every {@code step}-th output pixel in each direction is converted, so {@code out} holds
+     * {@code (outputWidth / step) * (outputHeight / step)} pixels, row by row.
+     */
+    public void convertToArgb(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                              int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                              int rotationDegrees, int step, int[] out) {
+        ensureOffsets(width, height, yRowStride, uvRowStride, uvPixelStride, rotationDegrees);
+
+        int thumbWidth = outputWidth / step;
+        int thumbHeight = outputHeight / step;
+        for (int ty = 0; ty < thumbHeight; ty++) {
+            for (int tx = 0; tx < thumbWidth; tx++) {
+                int i = ty * step * outputWidth + tx * step;
+                int y = yPlane.get(yOffsets[i]) & 0xFF;
+                int u = (uPlane.get(uvOffsets[i]) & 0xFF) - 128;
+                int v = (vPlane.get(uvOffsets[i]) & 0xFF) - 128;
+                int r = clamp(y + ((1436 * v) >> 10));
+                int g = clamp(y - ((352 * u + 731 * v) >> 10));
+                int b = clamp(y + ((1815 * u) >> 10));
+                out[ty * thumbWidth + tx] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private void ensureOffsets(int width, int height, int yRowStride, int uvRowStride,
+                               int uvPixelStride, int rotationDegrees) {
+        if (width != this.width || height != this.height || rotationDegrees != this.rotationDegrees
+                || yRowStride != this.yRowStride || uvRowStride != this.uvRowStride
+                || uvPixelStride != this.uvPixelStride) {
+            buildOffsets(width, height, yRowStride, uvRowStride, uvPixelStride, rotationDegrees);
+        }
+    }
+
+    private void buildOffsets(int width, int height, int yRowStride, int uvRowStride,
+                              int uvPixelStride, int rotationDegrees) {
+        if (rotationDegrees % 90 != 0) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotationDegrees);
+        }
+        int rotation = ((rotationDegrees % 360) + 360) % 360;
+        boolean swapped = rotation == 90 || rotation == 270;
+        int uprightWidth = swapped ? height : width;
+        int uprightHeight = swapped ? width : height;
+
+        // Largest crop with the output's aspect ratio, centered in the upright frame
+        float scale = Math.min(uprightWidth / (float) outputWidth, uprightHeight / (float) outputHeight);
+        float cropX = (uprightWidth - outputWidth * scale) / 2;
+        float cropY = (uprightHeight - outputHeight * scale) / 2;
+
+        for (int oy = 0; oy < outputHeight; oy++) {
+            int uy = Math.min(uprightHeight - 1, (int) (cropY + (oy + 0.5f) * scale));
+            for (int ox = 0; ox < outputWidth; ox++) {
+                int ux = Math.min(uprightWidth - 1, (int) (cropX + (ox + 0.5f) * scale));
+
+                // Map the upright pixel back to sensor coordinates
+                int sx;
+                int sy;
+                switch (rotation) {
+                    case 90:
+                        sx = uy;
+                        sy = height - 1 - ux;
+                        break;
+                    case 180:
+                        sx = width - 1 - ux;
+                        sy = height - 1 - uy;
+                        break;
+                    case 270:
+                        sx = width - 1 - uy;
+                        sy = ux;
+                        break;
+                    default:
+                        sx = ux;
+                        sy = uy;
+                        break;
+                }
+
+                int i = oy * outputWidth + ox;
+                yOffsets[i] = sy * yRowStride + sx;
+                uvOffsets[i] = (sy >> 1) * uvRowStride + (sx >> 1) * uvPixelStride;
+            }
+        }
+
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.yRowStride = yRowStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ArrayPoolTest {
+
+    @Test
+    public void get_roundsNewArraysUpToAPowerOfTwo() {
+        ArrayPool pool = new ArrayPool(1 << 20);
+        assertEquals(256, pool.getInts(200).length);
+        assertEquals(256, pool.getFloats(256).length);
+        assertEquals(1, pool.getBytes(0).length);
+        assertEquals(3, pool.getAllocations());
+    }
+
+    @Test
+    public void put_makesTheArrayAvailableToLargeEnoughRequests() {
+        ArrayPool pool = new ArrayPool(1 << 20);
+        int[] array = new int[300];
+        pool.put(array);
+
+        // 300 elements satisfy anything up to 256 but not 300 itself, whose class starts at 512
+        assertNotSame(array, pool.getInts(300));
+        assertSame(array, pool.getInts(150));
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() {
+        ArrayPool pool = new ArrayPool(1 << 20);
+        for (int frame = 0; frame < 100; frame++) {
+            int[] pixels = pool.getInts(224 * 224);
+            float[] scores = pool.getFloats(5);
+            byte[] row = pool.getBytes(640);
+            pool.put(row);
+            pool.put(scores);
+            pool.put(pixels);
+        }
+        assertEquals(3, pool.getAllocations());
+    }
+
+    @Test
+    public void typesArePooledSeparately() {
+        ArrayPool pool = new ArrayPool(1 << 20);
+        float[] floats = new float[64];
+        pool.put(floats);
+
+        assertEquals(64, pool.getInts(64).length);
+        assertSame(floats, pool.getFloats(64));
+    }
+
+    @Test
+    public void put_dropsArraysBeyondTheByteLimit() {
+        ArrayPool pool = new ArrayPool(1024);
+        pool.put(new int[128]);
+        pool.put(new int[128]);
+        pool.put(new byte[600]);
+
+        assertEquals(512 + 512, pool.getPooledBytes());
+        pool.clear();
+        assertEquals(0, pool.getPooledBytes());
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.licenta.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchScanPipelineTest {
+    private static final String[] LABELS = {"CBB", "CBSD", "CGM", "CMD", "Healthy"};
+    private static final int IMAGE_SIZE = 32;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void everyImage_getsAResultOrAnError() throws InterruptedException {
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 0, 0);
+        Collector collector = scan(classifier, null, ids(50));
+
+        assertFalse(collector.cancelled);
+        assertEquals(45, collector.results.size());
+        assertEquals(5, collector.errors.get());
+        // Batching does not change the answer for an image
+        for (Map.Entry<Integer, PredictionResult> entry : collector.results.entrySet()) {
+            assertEquals(classifyAlone(classifier, entry.getKey()), entry.getValue().label);
+        }
+    }
+
+    @Test
+    public void parallelInference_matchesSingleWorker() throws InterruptedException {
+        FakeClassifier single = new FakeClassifier(16, 16, LABELS, false, 0, 0);
+        List<FakeClassifier> members = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            members.add(new FakeClassifier(16, 16, LABELS, false, 1_000_000L, 0));
+        }
+        InterpreterPool pool = new InterpreterPool(members);
+        Collector collector = new Collector();
+        BatchScanPipeline<Integer, int[]> pipeline = newPipeline(pool, collector);
+        pipeline.setInferenceThreads(pool.size());
+        List<Integer> items = ids(100);
+        pipeline.start(items.iterator(), items.size());
+
+        assertTrue(collector.finished.await(10, TimeUnit.SECONDS));
+        assertFalse(collector.cancelled);
+        assertEquals(1, collector.finishCalls.get());
+        assertEquals(90, collector.results.size());
+        for (Map.Entry<Integer, PredictionResult> entry : collector.results.entrySet()) {
+            assertEquals(classifyAlone(single, entry.getKey()), entry.getValue().label);
+        }
+        // Every member took a share of the batches
+        for (FakeClassifier member : members) {
+            assertTrue(member.getRuns() > 0);
+        }
+    }
+
+    @Test
+    public void cachedImages_skipInference() throws InterruptedException, IOException {
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, true, 0, 0);
+        PredictionCache cache = new PredictionCache(folder.newFolder(), classifier.getModelVersion(),
+                LABELS.length, 64, 1 << 16);
+        Collector first = scan(classifier, cache, ids(30));
+        long classified = classifier.getImagesClassified();
+
+        Collector second = scan(classifier, cache, ids(30));
+
+        assertEquals(classified, classifier.getImagesClassified());
+        assertEquals(first.results.size(), second.results.size());
+        for (Map.Entry<Integer, PredictionResult> entry : first.results.entrySet()) {
+            assertEquals(entry.getValue().label, second.results.get(entry.getKey()).label);
+        }
+        cache.close();
+    }
+
+    @Test
+    public void failingHasher_becomesAnError() throws InterruptedException, IOException {
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 0, 0);
+        PredictionCache cache = new PredictionCache(folder.newFolder(), classifier.getModelVersion(),
+                LABELS.length, 64, 1 << 16);
+        Collector collector = new Collector();
+        BatchScanPipeline<Integer, int[]> pipeline = newPipeline(classifier, collector);
+        pipeline.setCache(cache, new BatchScanPipeline.Hasher<int[]>() {
+            @Override
+            public String hash(int[] image) {
+                throw new IllegalStateException("Recycled bitmap");
+            }
+        });
+        List<Integer> items = ids(20);
+        pipeline.start(items.iterator(), items.size());
+
+        assertTrue(collector.finished.await(10, TimeUnit.SECONDS));
+        assertFalse(collector.cancelled);
+        assertTrue(collector.results.isEmpty());
+        assertEquals(20, collector.errors.get());
+        cache.close();
+    }
+
+    @Test
+    public void cacheFailingMidBatch_reportsEachImageOnce() throws InterruptedException, IOException {
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 0, 0);
+        final AtomicInteger puts = new AtomicInteger();
+        PredictionCache cache = new PredictionCache(folder.newFolder(), classifier.getModelVersion(),
+                LABELS.length, 64, 1 << 16) {
+            @Override
+            public synchronized void put(String key, float[] scores, int offset) {
+                // Third image of the first batch, after two have been delivered
+                if (puts.incrementAndGet() == 3) {
+                    throw new IllegalStateException("Cache file closed");
+                }
+                super.put(key, scores, offset);
+            }
+        };
+        Collector collector = new Collector();
+        BatchScanPipeline<Integer, int[]> pipeline = newPipeline(classifier, collector);
+        pipeline.setCache(cache, new BatchScanPipeline.Hasher<int[]>() {
+            @Override
+            public String hash(int[] image) {
+                return new ContentHasher().update(image, 0, image.length).digest();
+            }
+        });
+        List<Integer> items = ids(20);
+        pipeline.start(items.iterator(), items.size());
+
+        assertTrue(collector.finished.await(10, TimeUnit.SECONDS));
+        // 2 corrupt images, and the 2 images of the failed batch that had no result yet
+        assertEquals(4, collector.errors.get());
+        assertEquals(16, collector.results.size());
+        cache.close();
+    }
+
+    @Test
+    public void everyDecodedImage_isRecycled() throws InterruptedException, IOException {
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 0, 0);
+        PredictionCache cache = new PredictionCache(folder.newFolder(), classifier.getModelVersion(),
+                LABELS.length, 64, 1 << 16);
+        scan(classifier, cache, ids(30));
+        final AtomicInteger recycled = new AtomicInteger();
+        Collector collector = new Collector();
+        BatchScanPipeline<Integer, int[]> pipeline = newPipeline(classifier, collector);
+        pipeline.setCache(cache, new BatchScanPipeline.Hasher<int[]>() {
+            @Override
+            public String hash(int[] image) {
+                return new ContentHasher().update(image, 0, image.length).digest();
+            }
+        });
+        pipeline.setRecycler(new BatchScanPipeline.Recycler<int[]>() {
+            @Override
+            public void recycle(int[] image) {
+                recycled.incrementAndGet();
+            }
+        });
+        // The first 30 are cache hits, the rest go through preprocessing
+        List<Integer> items = ids(60);
+        pipeline.start(items.iterator(), items.size());
+
+        assertTrue(collector.finished.await(10, TimeUnit.SECONDS));
+        assertEquals(54, collector.results.size());
+        // Images that failed to decode never existed
+        assertEquals(54, recycled.get());
+        cache.close();
+    }
+
+    @Test
+    public void cancel_finishesOnce() throws InterruptedException {
+        // 10 ms per batch keeps the scan running long enough to cancel it
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 10_000_000L, 0);
+        Collector collector = new Collector();
+        BatchScanPipeline<Integer, int[]> pipeline = newPipeline(classifier, collector);
+        List<Integer> items = ids(1000);
+        pipeline.start(items.iterator(), items.size());
+        Thread.sleep(30);
+        pipeline.cancel();
+
+        assertTrue(collector.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(collector.cancelled);
+        assertEquals(1, collector.finishCalls.get());
+        assertTrue(collector.results.size() < items.size());
+    }
+
+    private Collector scan(FakeClassifier classifier, PredictionCache cache, List<Integer> items)
+            throws InterruptedException {
+        Collector collector = new Collector();
+        BatchScanPipeline<Integer, int[]> pipeline = newPipeline(classifier, collector);
+        if (cache != null) {
+            pipeline.setCache(cache, new BatchScanPipeline.Hasher<int[]>() {
+                @Override
+                public String hash(int[] image) {
+                    return new ContentHasher().update(image, 0, image.length).digest();
+                }
+            });
+        }
+        pipeline.start(items.iterator(), items.size());
+        assertTrue(collector.finished.await(10, TimeUnit.SECONDS));
+        return collector;
+    }
+
+    private static BatchScanPipeline<Integer, int[]> newPipeline(Classifier classifier, Collector collector) {
+        final ImagePreprocessor preprocessor = classifier.newPreprocessor();
+        return new BatchScanPipeline<>(classifier,
+                new BatchScanPipeline.Decoder<Integer, int[]>() {
+                    @Override
+                    public int[] decode(Integer id) throws IOException {
+                        if (id % 10 == 7) {
+                            throw new IOException("Corrupt image " + id);
+                        }
+                        return image(id);
+                    }
+                },
+                new BatchScanPipeline.Preprocessor<int[]>() {
+                    @Override
+                    public void preprocess(int[] image, ByteBuffer batch, int imageIndex) {
+                        preprocessor.preprocess(image, IMAGE_SIZE, IMAGE_SIZE, batch, imageIndex);
+                    }
+                },
+                collector, 4, 2);
+    }
+
+    private static String classifyAlone(Classifier classifier, int id) {
+        ByteBuffer input = classifier.newInputBuffer();
+        classifier.newPreprocessor().preprocess(image(id), IMAGE_SIZE, IMAGE_SIZE, input);
+        return classifier.predict(input).label;
+    }
+
+    // Solid-colour test image whose colour depends on the id
+    private static int[] image(int id) {
+        int[] pixels = new int[IMAGE_SIZE * IMAGE_SIZE];
+        int color = 0xFF000000 | (id * 0x0F1733 & 0xFFFFFF);
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static List<Integer> ids(int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    private static class Collector implements BatchScanPipeline.Listener<Integer> {
+        final Map<Integer, PredictionResult> results = new ConcurrentHashMap<>();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger finishCalls = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean cancelled;
+
+        @Override
+        public void onResult(Integer item, PredictionResult result) {
+            results.put(item, result);
+        }
+
+        @Override
+        public void onError(Integer item, Exception error) {
+            errors.incrementAndGet();
+        }
+
+        @Override
+        public void onProgress(int processed, int failed, int total, float imagesPerSecond) {
+        }
+
+        @Override
+        public void onFinished(boolean cancelled) {
+            this.cancelled = cancelled;
+            finishCalls.incrementAndGet();
+            finished.countDown();
+        }
+    }
+}
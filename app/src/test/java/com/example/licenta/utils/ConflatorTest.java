@@ -0,0 +1,91 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConflatorTest {
+
+    @Test
+    public void onlyTheNewestValueIsDelivered_andReplacedOnesAreRecycled() {
+        final ArrayDeque<Runnable> scheduled = new ArrayDeque<>();
+        final List<Integer> delivered = new ArrayList<>();
+        final List<Integer> recycled = new ArrayList<>();
+        Conflator<Integer> conflator = new Conflator<>(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduled.add(command);
+            }
+        }, new Conflator.Consumer<Integer>() {
+            @Override
+            public void accept(Integer value) {
+                delivered.add(value);
+            }
+        }, new Conflator.Recycler<Integer>() {
+            @Override
+            public void recycle(Integer value) {
+                recycled.add(value);
+            }
+        });
+
+        for (int i = 1; i <= 5; i++) {
+            conflator.offer(i);
+        }
+        // However many values arrive, only one delivery waits at a time
+        assertEquals(1, scheduled.size());
+        scheduled.poll().run();
+        assertEquals(1, delivered.size());
+        assertEquals(5, (int) delivered.get(0));
+        assertEquals(4, recycled.size());
+        assertEquals(4, conflator.getConflated());
+
+        conflator.offer(6);
+        assertEquals(1, scheduled.size());
+        scheduled.poll().run();
+        assertEquals(6, (int) delivered.get(1));
+    }
+
+    @Test
+    public void everyValueIsEitherDeliveredOrRecycled() throws Exception {
+        final ExecutorService consumerThread = Executors.newSingleThreadExecutor();
+        final AtomicInteger delivered = new AtomicInteger();
+        final AtomicInteger recycled = new AtomicInteger();
+        Conflator<Integer> conflator = new Conflator<>(consumerThread, new Conflator.Consumer<Integer>() {
+            @Override
+            public void accept(Integer value) {
+                delivered.incrementAndGet();
+            }
+        }, new Conflator.Recycler<Integer>() {
+            @Override
+            public void recycle(Integer value) {
+                recycled.incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < 10000; i++) {
+            conflator.offer(i);
+        }
+        // Anything still waiting has a delivery scheduled behind this marker's predecessors
+        final CountDownLatch drained = new CountDownLatch(1);
+        consumerThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                drained.countDown();
+            }
+        });
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        consumerThread.shutdown();
+        assertEquals(10000, delivered.get() + recycled.get());
+        assertTrue(delivered.get() >= 1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void firstFrame_isDue() {
+        FrameScheduler scheduler = new FrameScheduler(0.5f, 10, 2000);
+        assertTrue(scheduler.isDue(0));
+        assertTrue(scheduler.isStale(0));
+    }
+
+    @Test
+    public void interval_followsLatencyAndDutyCycle() {
+        FrameScheduler scheduler = new FrameScheduler(0.5f, 10, 2000);
+        scheduler.onInference(0, 80 * MS);
+
+        // 80 ms of work at a 50% duty cycle leaves 160 ms between inferences
+        assertEquals(160 * MS, scheduler.getIntervalNanos());
+        assertFalse(scheduler.isDue(150 * MS));
+        assertTrue(scheduler.isDue(160 * MS));
+    }
+
+    @Test
+    public void interval_isCappedByMaxFps() {
+        FrameScheduler scheduler = new FrameScheduler(0.5f, 10, 2000);
+        scheduler.onInference(0, 5 * MS);
+
+        assertEquals(100 * MS, scheduler.getIntervalNanos());
+    }
+
+    @Test
+    public void result_becomesStale() {
+        FrameScheduler scheduler = new FrameScheduler(0.5f, 10, 2000);
+        scheduler.onInference(0, 10 * MS);
+
+        assertFalse(scheduler.isStale(1999 * MS));
+        assertTrue(scheduler.isStale(2000 * MS));
+    }
+}
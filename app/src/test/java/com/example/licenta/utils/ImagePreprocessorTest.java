@@ -0,0 +1,94 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ImagePreprocessorTest {
+    private static final float DELTA = 1e-6f;
+
+    @Test
+    public void sameSize_copiesAndNormalizes() {
+        int[] pixels = {0xFF000000, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+        ImagePreprocessor preprocessor = new ImagePreprocessor(2, 2);
+        ByteBuffer out = preprocessor.newInputBuffer();
+
+        preprocessor.preprocess(pixels, 2, 2, out);
+
+        float[] expected = {0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], out.getFloat(i * 4), DELTA);
+        }
+    }
+
+    @Test
+    public void downscale_interpolatesBetweenNeighbours() {
+        int[] pixels = {0xFF000000, 0xFFFFFFFF};
+        ImagePreprocessor preprocessor = new ImagePreprocessor(1, 1);
+        ByteBuffer out = preprocessor.newInputBuffer();
+
+        preprocessor.preprocess(pixels, 2, 1, out);
+
+        assertEquals(128 / 255.0f, out.getFloat(0), DELTA);
+    }
+
+    @Test
+    public void sourceSizeChange_rebuildsTables() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(2, 2);
+        ByteBuffer out = preprocessor.newInputBuffer();
+        int[] large = new int[16];
+        Arrays.fill(large, 0xFF336699);
+        preprocessor.preprocess(large, 4, 4, out);
+
+        int[] small = {0xFFFFFFFF};
+        preprocessor.preprocess(small, 1, 1, out);
+
+        for (int i = 0; i < 12; i++) {
+            assertEquals(1f, out.getFloat(i * 4), DELTA);
+        }
+    }
+
+    @Test
+    public void imageIndex_writesIntoBatchSlot() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(1, 1);
+        ByteBuffer batch = ByteBuffer.allocate(preprocessor.getInputBytes() * 2);
+
+        preprocessor.preprocess(new int[]{0xFFFFFFFF}, 1, 1, batch, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0f, batch.getFloat(i * 4), DELTA);
+            assertEquals(1f, batch.getFloat(12 + i * 4), DELTA);
+        }
+    }
+
+    @Test
+    public void quantizedUint8_writesRawPixels() {
+        int[] pixels = {0xFF00807F, 0xFFFF0102};
+        ImagePreprocessor preprocessor = ImagePreprocessor.quantized(2, 1, false, 1 / 255.0f, 0);
+        ByteBuffer out = preprocessor.newInputBuffer();
+
+        preprocessor.preprocess(pixels, 2, 1, out);
+
+        assertEquals(6, out.capacity());
+        int[] expected = {0x00, 0x80, 0x7F, 0xFF, 0x01, 0x02};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], out.get(i) & 0xFF);
+        }
+    }
+
+    @Test
+    public void quantizedInt8_appliesZeroPoint() {
+        int[] pixels = {0xFF00FF80};
+        ImagePreprocessor preprocessor = ImagePreprocessor.quantized(1, 1, true, 1 / 255.0f, -128);
+        ByteBuffer out = preprocessor.newInputBuffer();
+
+        preprocessor.preprocess(pixels, 1, 1, out);
+
+        assertEquals(-128, out.get(0));
+        assertEquals(127, out.get(1));
+        assertEquals(0, out.get(2));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InterpreterPoolTest {
+    private static final String[] LABELS = {"CBB", "CBSD", "CGM", "CMD", "Healthy"};
+
+    @Test
+    public void borrow_handsOutEachMemberOnce() throws InterruptedException {
+        InterpreterPool pool = newPool(3, 0);
+        Classifier first = pool.borrow();
+        Classifier second = pool.borrow();
+        Classifier third = pool.borrow();
+
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        assertNotSame(first, third);
+        assertEquals(0, pool.availableCount());
+        assertNull(pool.tryBorrow());
+
+        pool.release(second);
+        assertSame(second, pool.tryBorrow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void release_rejectsForeignClassifier() {
+        InterpreterPool pool = newPool(2, 0);
+        pool.release(new FakeClassifier(16, 16, LABELS, false, 0, 0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void release_rejectsDoubleRelease() throws InterruptedException {
+        InterpreterPool pool = newPool(2, 0);
+        Classifier member = pool.borrow();
+        pool.release(member);
+        pool.release(member);
+    }
+
+    @Test
+    public void predictions_runInParallel() throws InterruptedException {
+        // Four 50 ms runs on four members take about 50 ms, not 200
+        final InterpreterPool pool = newPool(4, 50_000_000L);
+        final CountDownLatch done = new CountDownLatch(4);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ByteBuffer input = pool.newInputBuffer();
+                    pool.predictInto(input, new float[LABELS.length]);
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 150);
+        assertEquals(4, pool.availableCount());
+    }
+
+    @Test
+    public void recommendedSize_coversTheCores() {
+        assertEquals(4, InterpreterPool.recommendedSize(8, 2));
+        assertEquals(2, InterpreterPool.recommendedSize(8, 4));
+        assertEquals(1, InterpreterPool.recommendedSize(2, 4));
+    }
+
+    private static InterpreterPool newPool(int size, long latencyNanos) {
+        List<FakeClassifier> members = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            members.add(new FakeClassifier(16, 16, LABELS, false, latencyNanos, 0));
+        }
+        return new InterpreterPool(members);
+    }
+}
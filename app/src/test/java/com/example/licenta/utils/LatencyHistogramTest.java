@@ -0,0 +1,74 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverValuesContiguously() {
+        int previous = -1;
+        for (long nanos = 0; nanos < 1 << 16; nanos++) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void bucketMidpoint_isWithinRelativeError() {
+        long[] values = {1, 17, 999, 123_456, 16_700_000, 1_000_000_000L};
+        for (long nanos : values) {
+            long midpoint = LatencyHistogram.bucketMidpoint(LatencyHistogram.bucketOf(nanos));
+            assertEquals(nanos, midpoint, nanos * 0.125);
+        }
+    }
+
+    @Test
+    public void percentiles_followTheDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..100 ms, one sample each
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMaxNanos());
+        assertEquals(50_500_000L, histogram.getMeanNanos());
+        assertEquals(50e6, histogram.getPercentileNanos(0.5), 50e6 * 0.125);
+        assertEquals(95e6, histogram.getPercentileNanos(0.95), 95e6 * 0.125);
+        assertEquals(99e6, histogram.getPercentileNanos(0.99), 99e6 * 0.125);
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000_000L);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(0.5));
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999, histogram.getMaxNanos());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class LeafGateTest {
+    private static final int WIDTH = 48;
+    private static final int HEIGHT = 32;
+
+    // Chroma of rgb(60, 140, 40), a green leaf, and rgb(140, 100, 70), dry soil
+    private static final int LEAF_U = 92;
+    private static final int LEAF_V = 96;
+    private static final int SOIL_U = 106;
+    private static final int SOIL_V = 150;
+
+    @Test
+    public void greenness_matchesRgbIndex() {
+        // 2 * 140 - 60 - 40 for the leaf, 2 * 100 - 140 - 70 for the soil
+        assertEquals(180, LeafGate.greenness(LEAF_U - 128, LEAF_V - 128), 3);
+        assertEquals(-10, LeafGate.greenness(SOIL_U - 128, SOIL_V - 128), 3);
+        assertEquals(0, LeafGate.greenness(0, 0));
+    }
+
+    @Test
+    public void leafFrame_passes_soilAndGrayFrames_areRejected() {
+        LeafGate gate = new LeafGate(8, 12, 0.2f);
+        assertTrue(accepts(gate, 105, LEAF_U, LEAF_V, WIDTH));
+        assertFalse(accepts(gate, 105, SOIL_U, SOIL_V, WIDTH));
+        assertFalse(accepts(gate, 105, 128, 128, WIDTH));
+        // Green chroma in a nearly black frame is noise
+        assertFalse(accepts(gate, 10, LEAF_U, LEAF_V, WIDTH));
+    }
+
+    @Test
+    public void onlyTheCenterSquareIsSampled() {
+        // Leaf on the left third, outside the 32x32 center square of the 48x32 frame
+        int uvWidth = WIDTH / 2;
+        ByteBuffer y = filled(WIDTH * HEIGHT, 105);
+        ByteBuffer u = filled(uvWidth * HEIGHT / 2, SOIL_U);
+        ByteBuffer v = filled(uvWidth * HEIGHT / 2, SOIL_V);
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 0; col < 4; col++) {
+                u.put(row * uvWidth + col, (byte) LEAF_U);
+                v.put(row * uvWidth + col, (byte) LEAF_V);
+            }
+        }
+        LeafGate gate = new LeafGate(8, 12, 0.2f);
+        assertFalse(gate.accepts(y, u, v, WIDTH, HEIGHT, WIDTH, uvWidth, 1));
+
+        // The same leaf inside the center square covers a quarter of it
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 8; col < 12; col++) {
+                u.put(row * uvWidth + col, (byte) LEAF_U);
+                v.put(row * uvWidth + col, (byte) LEAF_V);
+            }
+        }
+        assertTrue(gate.accepts(y, u, v, WIDTH, HEIGHT, WIDTH, uvWidth, 1));
+    }
+
+    private static boolean accepts(LeafGate gate, int luma, int u, int v, int rowStride) {
+        int uvSize = (WIDTH / 2) * (HEIGHT / 2);
+        return gate.accepts(filled(rowStride * HEIGHT, luma), filled(uvSize, u), filled(uvSize, v),
+                WIDTH, HEIGHT, rowStride, WIDTH / 2, 1);
+    }
+
+    private static ByteBuffer filled(int size, int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) value);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelBenchmarkTest {
+    private static final String[] LABELS = {"Healthy", "CBB", "CMD"};
+
+    @Test
+    public void run_measuresEachVariantAndComparesLabels() {
+        final long[] used = {0};
+        ModelBenchmark benchmark = new ModelBenchmark(1, 6, new ModelBenchmark.MemoryProbe() {
+            @Override
+            public long usedBytes() {
+                return used[0];
+            }
+        });
+        ModelBenchmark.Variant fast = new ModelBenchmark.Variant("fast", new ModelBenchmark.Loader() {
+            @Override
+            public Classifier load() {
+                used[0] += 1000;
+                return new FakeClassifier(8, 8, LABELS, false, 0, 0);
+            }
+        });
+        ModelBenchmark.Variant slow = new ModelBenchmark.Variant("slow", new ModelBenchmark.Loader() {
+            @Override
+            public Classifier load() {
+                return new FakeClassifier(8, 8, LABELS, true, 2_000_000, 0);
+            }
+        });
+
+        List<ModelBenchmark.Result> results = benchmark.run(Arrays.asList(fast, slow),
+                Arrays.asList(image(0xFF00FF00), image(0xFF804020)), null);
+
+        assertEquals(2, results.size());
+        ModelBenchmark.Result first = results.get(0);
+        assertNull(first.error);
+        assertEquals(1000, first.peakMemoryBytes);
+        assertEquals(2, first.labels.length);
+        assertEquals(1f, first.agreement, 0);
+
+        ModelBenchmark.Result second = results.get(1);
+        assertTrue(second.p50Nanos >= 1_500_000);
+        assertTrue(second.imagesPerSecond > 0 && second.imagesPerSecond < 600);
+        assertTrue(second.p99Nanos >= second.p50Nanos);
+    }
+
+    @Test
+    public void run_reportsVariantsThatFailToLoad() throws IOException {
+        ModelBenchmark benchmark = new ModelBenchmark(0, 1, new ModelBenchmark.MemoryProbe() {
+            @Override
+            public long usedBytes() {
+                return 0;
+            }
+        });
+        ModelBenchmark.Variant broken = new ModelBenchmark.Variant("broken, v2", new ModelBenchmark.Loader() {
+            @Override
+            public Classifier load() throws IOException {
+                throw new IOException("Unsupported tensor type");
+            }
+        });
+
+        List<ModelBenchmark.Result> results = benchmark.run(Arrays.asList(broken),
+                Arrays.asList(image(0xFF00FF00)), null);
+        assertEquals("Unsupported tensor type", results.get(0).error);
+        assertTrue(ModelBenchmark.summary(results).contains("failed: Unsupported tensor type"));
+
+        StringWriter csv = new StringWriter();
+        ModelBenchmark.writeCsv(results, csv);
+        assertTrue(csv.toString().contains("\n\"broken, v2\",,Unsupported tensor type,"));
+    }
+
+    @Test
+    public void agreement_isTheShareOfMatchingLabels() {
+        String[] reference = {"Healthy", "CBB", "CMD", "CMD"};
+        assertEquals(0.75f, ModelBenchmark.agreement(reference, new String[]{"Healthy", "CBB", "CMD", "CBB"}), 0);
+        assertEquals(1f, ModelBenchmark.agreement(reference, reference), 0);
+    }
+
+    private static ModelBenchmark.Image image(int color) {
+        int[] pixels = new int[16 * 16];
+        Arrays.fill(pixels, color);
+        return new ModelBenchmark.Image("test", pixels, 16, 16);
+    }
+}
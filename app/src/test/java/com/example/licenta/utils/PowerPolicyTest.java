@@ -0,0 +1,63 @@
+package com.example.licenta.utils;
+
+import android.os.PowerManager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PowerPolicyTest {
+    private static final long DELAY = 30_000;
+    private static final int NONE = PowerManager.THERMAL_STATUS_NONE;
+    private static final int MODERATE = PowerManager.THERMAL_STATUS_MODERATE;
+    private static final int SEVERE = PowerManager.THERMAL_STATUS_SEVERE;
+
+    @Test
+    public void worseConditions_applyAtOnce() {
+        PowerPolicy policy = new PowerPolicy(DELAY);
+        assertEquals(PowerPolicy.Mode.FULL, policy.update(NONE, 80, false, false, 0));
+        assertEquals(PowerPolicy.Mode.MINIMAL, policy.update(SEVERE, 80, false, false, 1));
+        assertEquals("device hot", policy.getReason());
+    }
+
+    @Test
+    public void recovery_waitsAndStepsOneModeAtATime() {
+        PowerPolicy policy = new PowerPolicy(DELAY);
+        policy.update(SEVERE, 80, false, false, 0);
+
+        assertEquals(PowerPolicy.Mode.MINIMAL, policy.update(NONE, 80, false, false, 1_000));
+        assertEquals(PowerPolicy.Mode.MINIMAL, policy.update(NONE, 80, false, false, 30_000));
+        assertEquals(PowerPolicy.Mode.SAVER, policy.update(NONE, 80, false, false, 31_000));
+        assertEquals("cooling down", policy.getReason());
+        assertEquals(PowerPolicy.Mode.SAVER, policy.update(NONE, 80, false, false, 60_000));
+        assertEquals(PowerPolicy.Mode.BALANCED, policy.update(NONE, 80, false, false, 61_000));
+        assertEquals(PowerPolicy.Mode.FULL, policy.update(NONE, 80, false, false, 91_000));
+        assertEquals("", policy.getReason());
+    }
+
+    @Test
+    public void relapse_restartsTheRecoveryDelay() {
+        PowerPolicy policy = new PowerPolicy(DELAY);
+        policy.update(MODERATE, 80, false, false, 0);
+        policy.update(NONE, 80, false, false, 1_000);
+        policy.update(MODERATE, 80, false, false, 20_000);
+        policy.update(NONE, 80, false, false, 25_000);
+        assertEquals(PowerPolicy.Mode.SAVER, policy.update(NONE, 80, false, false, 40_000));
+        assertEquals(PowerPolicy.Mode.BALANCED, policy.update(NONE, 80, false, false, 55_000));
+    }
+
+    @Test
+    public void lowBattery_needsAMarginToRecover_unlessCharging() {
+        PowerPolicy policy = new PowerPolicy(0);
+        assertEquals(PowerPolicy.Mode.BALANCED, policy.update(NONE, PowerPolicy.BATTERY_BALANCED, false, false, 0));
+        assertEquals("battery 30%", policy.getReason());
+
+        // Just above the threshold is not enough to go back to full
+        int justAbove = PowerPolicy.BATTERY_BALANCED + 1;
+        policy.update(NONE, justAbove, false, false, 1);
+        assertEquals(PowerPolicy.Mode.BALANCED, policy.update(NONE, justAbove, false, false, 2));
+
+        policy.update(NONE, justAbove, true, false, 3);
+        assertEquals(PowerPolicy.Mode.FULL, policy.update(NONE, justAbove, true, false, 4));
+    }
+}
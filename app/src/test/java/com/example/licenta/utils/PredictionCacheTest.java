@@ -0,0 +1,75 @@
+package com.example.licenta.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PredictionCacheTest {
+    private static final int NUM_CLASSES = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hash_dependsOnContent() {
+        int[] pixels = {1, 2, 3, 4};
+        String hash = new ContentHasher().update(pixels, 0, 4).digest();
+
+        assertEquals(32, hash.length());
+        assertEquals(hash, new ContentHasher().update(pixels, 0, 4).digest());
+        assertNotEquals(hash, new ContentHasher().update(new int[]{1, 2, 3, 5}, 0, 4).digest());
+        assertNotEquals(hash, new ContentHasher().update(pixels, 0, 3).digest());
+    }
+
+    @Test
+    public void scores_surviveReopen() throws IOException {
+        File dir = folder.newFolder();
+        String key = key(1);
+        PredictionCache cache = new PredictionCache(dir, "v1", NUM_CLASSES, 4, 4096);
+        cache.put(key, new float[]{0, 0.1f, 0.2f, 0.3f, 0.4f, 9}, 1);
+        cache.close();
+
+        cache = new PredictionCache(dir, "v1", NUM_CLASSES, 4, 4096);
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.3f, 0.4f, 9}, cache.get(key), 0);
+        assertNull(cache.get(key(2)));
+        cache.close();
+    }
+
+    @Test
+    public void otherModelVersion_startsEmpty() throws IOException {
+        File dir = folder.newFolder();
+        PredictionCache cache = new PredictionCache(dir, "v1", NUM_CLASSES, 4, 4096);
+        cache.put(key(1), new float[NUM_CLASSES], 0);
+        cache.close();
+
+        cache = new PredictionCache(dir, "v2", NUM_CLASSES, 4, 4096);
+        assertNull(cache.get(key(1)));
+        cache.close();
+        assertArrayEquals(new String[]{"v2.bin"}, dir.list());
+    }
+
+    @Test
+    public void disk_staysWithinBound() throws IOException {
+        // 16-byte key + 5 floats = 36 bytes per record, so 8 header bytes + 10 records fit
+        PredictionCache cache = new PredictionCache(folder.newFolder(), "v1", NUM_CLASSES, 2, 8 + 36 * 10);
+        for (int i = 0; i < 25; i++) {
+            cache.put(key(i), new float[]{i, 0, 0, 0, 0}, 0);
+        }
+
+        assertTrue(cache.diskSize() <= 10);
+        assertEquals(2, cache.memorySize());
+        // The oldest entries were dropped, the newest are still on disk
+        assertNull(cache.get(key(0)));
+        assertEquals(20, cache.get(key(20))[0], 0);
+        cache.close();
+    }
+
+    private static String key(int i) {
+        return new ContentHasher().update(i).digest();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PredictionResultTest {
+    private static final String[] LABELS = {"CBB", "CBSD", "CGM", "CMD", "Healthy"};
+
+    @Test
+    public void argMax_picksLabelAndAccuracy() {
+        PredictionResult result = new PredictionResult(new float[]{0.1f, 0.05f, 0.6f, 0.2f, 0.05f}, LABELS, 12);
+
+        assertEquals(2, result.labelIndex);
+        assertEquals("CGM", result.label);
+        assertEquals(60f, result.accuracy, 1e-4);
+        assertEquals(12, result.latency);
+        assertEquals(5, result.getNumClasses());
+    }
+
+    @Test
+    public void staticArgMax_isRelativeToTheOffset() {
+        float[] batch = {0.9f, 0.1f, 0.2f, 0.5f, 0.5f, 0.1f};
+
+        assertEquals(0, PredictionResult.argMax(batch, 0, 3));
+        // Ties go to the first class
+        assertEquals(0, PredictionResult.argMax(batch, 3, 3));
+    }
+
+    @Test
+    public void topK_ranksBestFirst() {
+        PredictionResult result = new PredictionResult(new float[]{0.1f, 0.05f, 0.6f, 0.2f, 0.05f}, LABELS, 0);
+        int[] top = new int[3];
+
+        assertEquals(3, result.topK(3, top));
+        assertArrayEquals(new int[]{2, 3, 0}, top);
+    }
+
+    @Test
+    public void topK_isBoundedByClassesAndOutput() {
+        PredictionResult result = new PredictionResult(new float[]{0.3f, 0.7f}, new String[]{"a", "b"}, 0);
+        int[] top = new int[4];
+
+        assertEquals(2, result.topK(4, top));
+        assertEquals(1, top[0]);
+        assertEquals(0, top[1]);
+        assertEquals(1, result.topK(1, top));
+        assertEquals(1, top[0]);
+        assertEquals(0, result.topK(0, top));
+    }
+
+    @Test
+    public void topK_keepsClassOrderForTies() {
+        PredictionResult result = new PredictionResult(new float[]{0.25f, 0.25f, 0.25f, 0.25f}, new String[4], 0);
+        int[] top = new int[2];
+
+        result.topK(2, top);
+        assertArrayEquals(new int[]{0, 1}, top);
+    }
+
+    @Test
+    public void missingLabel_isNull() {
+        PredictionResult result = new PredictionResult(new float[]{0, 1}, new String[]{"a"}, 0);
+
+        assertNull(result.label);
+        assertEquals("a", result.getLabel(0));
+    }
+}
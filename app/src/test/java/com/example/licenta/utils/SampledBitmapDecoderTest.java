@@ -0,0 +1,21 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SampledBitmapDecoderTest {
+    @Test
+    public void sampleSize_keepsShortSideAboveTarget() {
+        // 12 MP photo: 3024 / 8 = 378 still covers 224, 3024 / 16 = 189 would not
+        assertEquals(8, SampledBitmapDecoder.sampleSize(4032, 3024, 224));
+        assertEquals(4, SampledBitmapDecoder.sampleSize(3024, 4032, 720));
+    }
+
+    @Test
+    public void sampleSize_neverUpsamples() {
+        assertEquals(1, SampledBitmapDecoder.sampleSize(200, 100, 224));
+        assertEquals(1, SampledBitmapDecoder.sampleSize(224, 224, 224));
+        assertEquals(2, SampledBitmapDecoder.sampleSize(448, 448, 224));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.licenta.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ScanExporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void csv_hasOneRowPerScan_newestFirst() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        store.add(0, "Healthy", 1, new float[]{0.25f, 0.75f}, 0, 12, ScanHistoryStore.SOURCE_GALLERY, "content://img/1", null);
+        store.add(1000, "Sick, badly", 0, new float[]{0.5f, 0.5f}, 0, 8, ScanHistoryStore.SOURCE_CAMERA, null, null);
+        store.flush();
+
+        String[] lines = export(store, new String[]{"CBB", null}, ScanExporter.Format.CSV).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,time,timestamp_ms,source,image,label,label_index,confidence,latency_ms,CBB,class_1", lines[0]);
+        assertEquals("1,1970-01-01T00:00:01.000Z,1000,camera,,\"Sick, badly\",0,0.5,8,0.5,0.5", lines[1]);
+        assertEquals("0,1970-01-01T00:00:00.000Z,0,gallery,content://img/1,Healthy,1,0.75,12,0.25,0.75", lines[2]);
+        store.close();
+    }
+
+    @Test
+    public void jsonLines_escapeStringsAndKeyScoresByClass() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        store.add(0, "a \"quoted\" label", 1, new float[]{0.25f, 0.75f}, 0, 3, ScanHistoryStore.SOURCE_BATCH, "content://x\\y", null);
+        store.flush();
+
+        String json = export(store, new String[]{"A", "B"}, ScanExporter.Format.JSON_LINES);
+        assertEquals("{\"id\":0,\"time\":\"1970-01-01T00:00:00.000Z\",\"timestamp_ms\":0,\"source\":\"batch\","
+                + "\"image\":\"content://x\\\\y\",\"label\":\"a \\\"quoted\\\" label\",\"label_index\":1,"
+                + "\"confidence\":0.75,\"latency_ms\":3,\"scores\":{\"A\":0.25,\"B\":0.75}}\n", json);
+        store.close();
+    }
+
+    @Test
+    public void longHistory_streamsEveryRowInOrder() throws Exception {
+        // More rows than the queue holds and many pages of the store
+        int count = 5000;
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 1);
+        for (int i = 0; i < count; i++) {
+            store.add(i, "L", 0, new float[]{1}, 0, 1, ScanHistoryStore.SOURCE_BATCH, "content://img/" + i, null);
+        }
+        store.flush();
+
+        final int[] progress = new int[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int rows = new ScanExporter(store, null).export(out, ScanExporter.Format.CSV, new ScanExporter.Listener() {
+            @Override
+            public void onProgress(int written, int total) {
+                assertEquals(5000, total);
+                progress[0] = written;
+            }
+        });
+        assertEquals(count, rows);
+        assertEquals(count, progress[0]);
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(count + 1, lines.length);
+        for (int i = 1; i <= count; i++) {
+            assertTrue(lines[i].startsWith((count - i) + ","));
+        }
+        store.close();
+    }
+
+    private static String export(ScanHistoryStore store, String[] classNames, ScanExporter.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ScanExporter(store, classNames).export(out, format, null);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.licenta.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanHistoryStoreTest {
+    private static final float DELTA = 1e-6f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void page_returnsNewestFirstAndContinuesFromTheLastId() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 3);
+        for (int i = 0; i < 7; i++) {
+            store.add(1000 + i, "Label " + i, i % 3, new float[]{i, i + 1, i + 2}, 0, i, ScanHistoryStore.SOURCE_BATCH, null, null);
+        }
+        store.flush();
+        assertEquals(7, store.size());
+
+        List<ScanHistoryStore.Entry> first = store.page(Long.MAX_VALUE, 3);
+        assertEquals(3, first.size());
+        assertEquals(6, first.get(0).id);
+        assertEquals(1006, first.get(0).timestamp);
+        assertEquals("Label 6", first.get(0).label);
+        assertEquals(0, first.get(0).labelIndex);
+        assertArrayEquals(new float[]{6, 7, 8}, first.get(0).scores, DELTA);
+        assertEquals(ScanHistoryStore.SOURCE_BATCH, first.get(0).source);
+
+        List<ScanHistoryStore.Entry> second = store.page(first.get(2).id, 3);
+        assertEquals(3, second.get(0).id);
+        List<ScanHistoryStore.Entry> last = store.page(second.get(2).id, 3);
+        assertEquals(1, last.size());
+        assertEquals(0, last.get(0).id);
+        assertTrue(store.page(0, 3).isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void thumbnails_roundTrip() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        store.add(1, "A", 0, new float[]{1, 0}, 0, 5, ScanHistoryStore.SOURCE_CAMERA, null, new byte[]{1, 2, 3});
+        store.add(2, "B", 1, new float[]{0, 1}, 0, 5, ScanHistoryStore.SOURCE_GALLERY, null, null);
+        store.add(3, "C", 1, new float[]{0, 1}, 0, 5, ScanHistoryStore.SOURCE_GALLERY, null, new byte[]{4, 5});
+        store.flush();
+
+        List<ScanHistoryStore.Entry> entries = store.page(Long.MAX_VALUE, 10);
+        assertArrayEquals(new byte[]{4, 5}, store.readThumbnail(entries.get(0)));
+        assertFalse(entries.get(1).hasThumbnail());
+        assertNull(store.readThumbnail(entries.get(1)));
+        assertArrayEquals(new byte[]{1, 2, 3}, store.readThumbnail(entries.get(2)));
+        store.close();
+    }
+
+    @Test
+    public void references_roundTripNextToThumbnails() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        store.add(1, "A", 0, new float[]{1, 0}, 0, 5, ScanHistoryStore.SOURCE_GALLERY, "content://a/1", new byte[]{1, 2, 3});
+        store.add(2, "B", 1, new float[]{0, 1}, 0, 5, ScanHistoryStore.SOURCE_BATCH, "content://a/\u00e9", null);
+        store.add(3, "C", 1, new float[]{0, 1}, 0, 5, ScanHistoryStore.SOURCE_CAMERA, null, new byte[]{4});
+        store.flush();
+
+        List<ScanHistoryStore.Entry> entries = store.page(Long.MAX_VALUE, 10);
+        assertNull(store.readReference(entries.get(0)));
+        assertArrayEquals(new byte[]{4}, store.readThumbnail(entries.get(0)));
+        assertEquals("content://a/\u00e9", store.readReference(entries.get(1)));
+        assertEquals("content://a/1", store.readReference(entries.get(2)));
+        assertArrayEquals(new byte[]{1, 2, 3}, store.readThumbnail(entries.get(2)));
+        store.close();
+    }
+
+    @Test
+    public void versionOneHistory_isUpgradedWithoutReferences() throws Exception {
+        // Header, then one record as version 1 wrote it: no reference length before the scores
+        ByteBuffer v1 = ByteBuffer.allocate(8 + 80 + 2 * 4);
+        v1.putInt(0x53485331).putInt(2);
+        v1.putLong(42).putInt(6).putInt(1).putInt(ScanHistoryStore.SOURCE_CAMERA).putLong(0).putInt(0);
+        v1.put((byte) 1).put((byte) 'B');
+        v1.position(8 + 80);
+        v1.putFloat(0.25f).putFloat(0.75f);
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "history.bin"))) {
+            out.write(v1.array());
+        }
+
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        store.add(43, "C", 0, new float[]{1, 0}, 0, 3, ScanHistoryStore.SOURCE_GALLERY, "content://c", null);
+        store.flush();
+        List<ScanHistoryStore.Entry> entries = store.page(Long.MAX_VALUE, 10);
+        assertEquals(2, entries.size());
+        assertEquals("content://c", store.readReference(entries.get(0)));
+        ScanHistoryStore.Entry old = entries.get(1);
+        assertEquals(42, old.timestamp);
+        assertEquals("B", old.label);
+        assertEquals(6, old.latencyMs);
+        assertFalse(old.hasReference());
+        assertArrayEquals(new float[]{0.25f, 0.75f}, old.scores, DELTA);
+        store.close();
+    }
+
+    @Test
+    public void reopen_keepsEntriesAndDropsAPartialRecord() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        store.add(1, "A", 0, new float[]{0.9f, 0.1f}, 0, 5, ScanHistoryStore.SOURCE_CAMERA, null, null);
+        store.add(2, "B", 1, new float[]{0.2f, 0.8f}, 0, 7, ScanHistoryStore.SOURCE_CAMERA, null, null);
+        store.close();
+        // Simulate a crash in the middle of the next append
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), "history.bin"), "rw")) {
+            file.setLength(file.length() + 10);
+        }
+
+        // The class count of an existing history wins over the one passed in
+        ScanHistoryStore reopened = new ScanHistoryStore(folder.getRoot(), 5);
+        assertEquals(2, reopened.getNumClasses());
+        assertEquals(2, reopened.size());
+        reopened.add(3, "C", 0, new float[]{0.6f, 0.4f}, 0, 9, ScanHistoryStore.SOURCE_GALLERY, null, null);
+        reopened.flush();
+
+        List<ScanHistoryStore.Entry> entries = reopened.page(Long.MAX_VALUE, 10);
+        assertEquals(3, entries.size());
+        assertEquals("C", entries.get(0).label);
+        assertEquals(7, entries.get(1).latencyMs);
+        assertArrayEquals(new float[]{0.9f, 0.1f}, entries.get(2).scores, DELTA);
+        reopened.close();
+    }
+
+    @Test
+    public void add_copiesScoresFromTheOffsetAndTruncatesLongLabels() throws Exception {
+        ScanHistoryStore store = new ScanHistoryStore(folder.getRoot(), 2);
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            label.append('x');
+        }
+        float[] batchScores = {0.1f, 0.9f, 0.7f, 0.3f};
+        store.add(1, label.toString(), 0, batchScores, 2, 3, ScanHistoryStore.SOURCE_BATCH, null, null);
+        batchScores[2] = 0;
+        store.flush();
+
+        ScanHistoryStore.Entry entry = store.page(Long.MAX_VALUE, 1).get(0);
+        assertArrayEquals(new float[]{0.7f, 0.3f}, entry.scores, DELTA);
+        assertEquals(47, entry.label.length());
+        store.close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class SceneChangeDetectorTest {
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 32;
+
+    @Test
+    public void firstFrame_countsAsChanged() {
+        SceneChangeDetector detector = new SceneChangeDetector(4, 8);
+        assertTrue(detector.hasChanged(frame(100), WIDTH, HEIGHT, WIDTH));
+    }
+
+    @Test
+    public void smallNoise_isIgnored() {
+        SceneChangeDetector detector = new SceneChangeDetector(4, 8);
+        detector.hasChanged(frame(100), WIDTH, HEIGHT, WIDTH);
+        detector.accept();
+
+        assertFalse(detector.hasChanged(frame(104), WIDTH, HEIGHT, WIDTH));
+        assertTrue(detector.hasChanged(frame(120), WIDTH, HEIGHT, WIDTH));
+    }
+
+    @Test
+    public void drift_accumulatesAgainstReference() {
+        SceneChangeDetector detector = new SceneChangeDetector(4, 8);
+        detector.hasChanged(frame(100), WIDTH, HEIGHT, WIDTH);
+        detector.accept();
+
+        // Each step is small, but the reference stays at the last accepted frame
+        assertFalse(detector.hasChanged(frame(105), WIDTH, HEIGHT, WIDTH));
+        assertTrue(detector.hasChanged(frame(110), WIDTH, HEIGHT, WIDTH));
+    }
+
+    private static ByteBuffer frame(int luma) {
+        ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            buffer.put(i, (byte) luma);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.licenta.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Loads run only when the test drains the queue; callbacks run on the worker
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private final Executor worker = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+    };
+    private final Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private final List<String> delivered = new ArrayList<>();
+    private final ThumbnailCache.Callback<String> collect = new ThumbnailCache.Callback<String>() {
+        @Override
+        public void onThumbnail(String thumbnail) {
+            delivered.add(thumbnail);
+        }
+    };
+
+    @Test
+    public void concurrentRequests_shareOneLoad() {
+        ThumbnailCache<String> cache = newCache(1000, null);
+        CountingSource source = new CountingSource("a");
+        cache.load("a", true, source, collect);
+        cache.load("a", true, source, collect);
+        assertEquals(1, pending.size());
+
+        drain();
+        assertEquals(1, source.loads);
+        assertEquals(2, delivered.size());
+
+        // Now a memory hit, delivered before load() returns
+        cache.load("a", true, source, collect);
+        assertEquals(3, delivered.size());
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    public void throwingSource_deliversNullAndAllowsARetry() {
+        ThumbnailCache<String> cache = newCache(1000, null);
+        ThumbnailCache.Source<String> revoked = new ThumbnailCache.Source<String>() {
+            @Override
+            public String load() {
+                throw new SecurityException("Permission revoked");
+            }
+        };
+        ThumbnailCache<String>.Request request = cache.load("a", true, revoked, collect);
+        drain();
+        assertFalse(request.isPending());
+        assertEquals(1, delivered.size());
+        assertNull(delivered.get(0));
+
+        // The failed load is not left in flight, so the next request loads again
+        CountingSource source = new CountingSource("a");
+        cache.load("a", true, source, collect);
+        drain();
+        assertEquals(1, source.loads);
+        assertEquals("a", delivered.get(1));
+    }
+
+    @Test
+    public void cancelledBeforeStart_skipsTheLoad() {
+        ThumbnailCache<String> cache = newCache(1000, null);
+        CountingSource source = new CountingSource("a");
+        ThumbnailCache<String>.Request first = cache.load("a", true, source, collect);
+        ThumbnailCache<String>.Request second = cache.load("a", true, source, collect);
+        first.cancel();
+        assertTrue(second.isPending());
+        second.cancel();
+        assertFalse(second.isPending());
+
+        drain();
+        assertEquals(0, source.loads);
+        assertEquals(1, cache.getSkippedLoads());
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void memoryTier_evictsLeastRecentlyUsedBeyondItsByteLimit() {
+        ThumbnailCache<String> cache = newCache(10, null);
+        cache.load("a", true, new CountingSource("aaaa"), collect);
+        cache.load("b", true, new CountingSource("bbbb"), collect);
+        drain();
+        cache.load("a", true, new CountingSource("aaaa"), collect);
+        cache.load("c", true, new CountingSource("cccc"), collect);
+        drain();
+
+        assertEquals(8, cache.getMemoryBytes());
+        assertNotNull(cache.getIfCached("a"));
+        assertNull(cache.getIfCached("b"));
+        assertNotNull(cache.getIfCached("c"));
+    }
+
+    @Test
+    public void diskTier_servesThumbnailsAfterMemoryIsCleared() {
+        ThumbnailCache<String> cache = newCache(1000, folder.getRoot());
+        CountingSource source = new CountingSource("photo");
+        cache.load("content://photo/1", true, source, collect);
+        drain();
+        cache.clearMemory();
+
+        // A new cache over the same directory, as after a restart
+        ThumbnailCache<String> reopened = newCache(1000, folder.getRoot());
+        reopened.load("content://photo/1", true, source, collect);
+        drain();
+        assertEquals(1, source.loads);
+        assertEquals(1, reopened.getDiskHits());
+        assertEquals("photo", delivered.get(1));
+    }
+
+    @Test
+    public void diskTier_staysWithinItsByteLimit() {
+        ThumbnailCache<String> cache = new ThumbnailCache<>(new StringCodec(), 1000, folder.getRoot(), 10,
+                worker, direct);
+        cache.load("a", true, new CountingSource("aaaa"), collect);
+        cache.load("b", true, new CountingSource("bbbb"), collect);
+        cache.load("c", true, new CountingSource("cccc"), collect);
+        cache.load("d", false, new CountingSource("dddd"), collect);
+        drain();
+
+        assertEquals(8, cache.getDiskBytes());
+        assertEquals(2, folder.getRoot().listFiles().length);
+    }
+
+    private ThumbnailCache<String> newCache(long memoryBytes, File directory) {
+        return new ThumbnailCache<>(new StringCodec(), memoryBytes, directory, 1 << 20, worker, direct);
+    }
+
+    private void drain() {
+        while (!pending.isEmpty()) {
+            pending.poll().run();
+        }
+    }
+
+    private static class CountingSource implements ThumbnailCache.Source<String> {
+        final String value;
+        int loads;
+
+        CountingSource(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String load() {
+            loads++;
+            return value;
+        }
+    }
+
+    private static class StringCodec implements ThumbnailCache.Codec<String> {
+        @Override
+        public int sizeOf(String thumbnail) {
+            return thumbnail.length();
+        }
+
+        @Override
+        public byte[] encode(String thumbnail) {
+            return thumbnail.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] data) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    }
+}
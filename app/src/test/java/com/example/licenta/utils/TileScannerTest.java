@@ -0,0 +1,91 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TileScannerTest {
+    private static final String[] LABELS = {"CBB", "CBSD", "CGM", "CMD", "Healthy"};
+
+    @Test
+    public void planTiles_coverTheImageWithOverlap() {
+        TileScanner scanner = new TileScanner(new FakeClassifier(32, 32, LABELS, false, 0, 0),
+                4, 100, 0.25f, Long.MAX_VALUE, "Healthy");
+        List<TileScanner.Tile> tiles = scanner.planTiles(100, 56);
+
+        // Stride 24: 4 columns span 100 pixels, 2 rows span 56
+        assertEquals(8, tiles.size());
+        TileScanner.Tile last = tiles.get(tiles.size() - 1);
+        assertEquals(3, last.column);
+        assertEquals(1, last.row);
+        for (TileScanner.Tile tile : tiles) {
+            assertEquals(32, tile.size);
+            assertTrue(tile.left >= 0 && tile.left + tile.size <= 100);
+            assertTrue(tile.top >= 0 && tile.top + tile.size <= 56);
+        }
+        assertEquals(0, tiles.get(0).left);
+        assertEquals(100 - 32, last.left);
+        assertEquals(56 - 32, last.top);
+    }
+
+    @Test
+    public void planTiles_growTilesToStayWithinTheCap() {
+        TileScanner scanner = new TileScanner(new FakeClassifier(16, 16, LABELS, false, 0, 0),
+                4, 6, 0.25f, Long.MAX_VALUE, "Healthy");
+        List<TileScanner.Tile> tiles = scanner.planTiles(200, 120);
+
+        assertTrue(tiles.size() <= 6);
+        assertTrue(tiles.get(0).size > 16);
+    }
+
+    @Test
+    public void scan_aggregatesEveryTile() {
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 0, 0);
+        TileScanner scanner = new TileScanner(classifier, 4, 16, 0.25f, Long.MAX_VALUE, "Healthy");
+        TileScanner.Result result = scanner.scan(noise(64, 48), 64, 48);
+
+        assertFalse(result.truncated);
+        assertEquals(result.tiles.size(), result.tilesScanned);
+        // The whole image is classified as well as every tile
+        assertEquals(result.tiles.size() + 1, classifier.getImagesClassified());
+        float sum = 0;
+        for (int i = 0; i < LABELS.length; i++) {
+            sum += result.prediction.getScore(i);
+        }
+        assertEquals(1f, sum, 1e-4f);
+        for (float heat : result.heat) {
+            assertTrue(heat >= 0 && heat <= 1);
+        }
+    }
+
+    @Test
+    public void scan_stopsAtTheTimeBudget() {
+        // 20 ms per batch against a 30 ms budget leaves room for two batches
+        FakeClassifier classifier = new FakeClassifier(16, 16, LABELS, false, 20_000_000L, 0);
+        TileScanner scanner = new TileScanner(classifier, 2, 16, 0.25f, 30_000_000L, "Healthy");
+        TileScanner.Result result = scanner.scan(noise(64, 64), 64, 64);
+
+        assertTrue(result.truncated);
+        assertTrue(result.tilesScanned < result.tiles.size());
+        assertTrue(result.tilesScanned >= 1);
+        int unscanned = 0;
+        for (float heat : result.heat) {
+            if (heat < 0) {
+                unscanned++;
+            }
+        }
+        assertEquals(result.tiles.size() - result.tilesScanned, unscanned);
+    }
+
+    private static int[] noise(int width, int height) {
+        int[] pixels = new int[width * height];
+        int seed = 12345;
+        for (int i = 0; i < pixels.length; i++) {
+            seed = seed * 1103515245 + 12345;
+            pixels[i] = 0xFF000000 | (seed >>> 8);
+        }
+        return pixels;
+    }
+}
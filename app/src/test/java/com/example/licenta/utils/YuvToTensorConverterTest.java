@@ -0,0 +1,89 @@
+package com.example.licenta.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class YuvToTensorConverterTest {
+    private static final float DELTA = 1e-6f;
+
+    @Test
+    public void neutralChroma_isGray() {
+        ByteBuffer y = ByteBuffer.allocate(4);
+        y.put(new byte[]{0, 51, (byte) 102, (byte) 255});
+        ByteBuffer u = filled(1, 128);
+        ByteBuffer v = filled(1, 128);
+        ByteBuffer out = newOutput(2, 2);
+
+        new YuvToTensorConverter(new ImagePreprocessor(2, 2)).convert(y, u, v, 2, 2, 2, 1, 1, 0, out);
+
+        float[] expected = {0f, 0.2f, 0.4f, 1f};
+        for (int i = 0; i < 4; i++) {
+            for (int c = 0; c < 3; c++) {
+                assertEquals(expected[i], out.getFloat((i * 3 + c) * 4), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void rotation90_cropsAndRotatesIntoOutput() {
+        // 4x2 sensor frame with luma = 10 * (x + 4 * y) and a padded row stride
+        int rowStride = 6;
+        ByteBuffer y = ByteBuffer.allocate(rowStride * 2);
+        for (int row = 0; row < 2; row++) {
+            for (int col = 0; col < 4; col++) {
+                y.put(row * rowStride + col, (byte) (10 * (col + 4 * row)));
+            }
+        }
+        ByteBuffer u = filled(2, 128);
+        ByteBuffer v = filled(2, 128);
+        ByteBuffer out = newOutput(2, 2);
+
+        new YuvToTensorConverter(new ImagePreprocessor(2, 2)).convert(y, u, v, 4, 2, rowStride, 2, 1, 90, out);
+
+        // Upright frame is 2x4; the center crop covers upright rows 1..2,
+        // which are sensor columns 1..2 read bottom row first
+        int[][] sensor = {{1, 1}, {1, 0}, {2, 1}, {2, 0}};
+        for (int i = 0; i < 4; i++) {
+            float expected = 10 * (sensor[i][0] + 4 * sensor[i][1]) / 255.0f;
+            assertEquals(expected, out.getFloat(i * 12), DELTA);
+        }
+    }
+
+    @Test
+    public void convertToArgb_samplesEveryStepthPixel() {
+        // 4x4 frame, luma = 10 * (x + 4 * y), no rotation; red chroma on the whole frame
+        ByteBuffer y = ByteBuffer.allocate(16);
+        for (int i = 0; i < 16; i++) {
+            y.put(i, (byte) (10 * i));
+        }
+        ByteBuffer u = filled(4, 128);
+        ByteBuffer v = filled(4, 228);
+        int[] argb = new int[4];
+
+        new YuvToTensorConverter(new ImagePreprocessor(4, 4))
+                .convertToArgb(y, u, v, 4, 4, 4, 2, 1, 0, 2, argb);
+
+        int[] luma = {0, 20, 80, 100};
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0xFF, argb[i] >>> 24);
+            assertEquals(Math.min(255, luma[i] + ((1436 * 100) >> 10)), (argb[i] >> 16) & 0xFF);
+            assertEquals(luma[i], argb[i] & 0xFF);
+        }
+    }
+
+    private static ByteBuffer filled(int size, int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) value);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer newOutput(int width, int height) {
+        return ByteBuffer.allocateDirect(width * height * 3 * 4).order(ByteOrder.nativeOrder());
+    }
+}
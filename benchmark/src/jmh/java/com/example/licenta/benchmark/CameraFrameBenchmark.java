@@ -0,0 +1,74 @@
+package com.example.licenta.benchmark;
+
+import com.example.licenta.utils.ImagePreprocessor;
+import com.example.licenta.utils.YuvToTensorConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * One camera frame from YUV_420_888 planes to a 224x224 model input, with the interleaved
+ * chroma layout (pixel stride 2) most devices deliver and the 90 degree rotation of a phone
+ * held upright.
+ */
+@State(Scope.Thread)
+public class CameraFrameBenchmark {
+    @Param({"640x480", "1280x720"})
+    public String frame;
+
+    private int width;
+    private int height;
+    private ByteBuffer yPlane;
+    private ByteBuffer uPlane;
+    private ByteBuffer vPlane;
+    private YuvToTensorConverter floatConverter;
+    private YuvToTensorConverter quantizedConverter;
+    private ByteBuffer floatInput;
+    private ByteBuffer quantizedInput;
+
+    @Setup
+    public void setUp() {
+        String[] size = frame.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        Random random = new Random(3);
+
+        yPlane = PreprocessBenchmark.direct(width * height);
+        for (int i = 0; i < width * height; i++) {
+            yPlane.put(i, (byte) random.nextInt(256));
+        }
+        // U and V share one interleaved buffer, offset by a byte, as on most camera HALs
+        ByteBuffer chroma = PreprocessBenchmark.direct(width * height / 2);
+        for (int i = 0; i < width * height / 2; i++) {
+            chroma.put(i, (byte) random.nextInt(256));
+        }
+        uPlane = chroma.duplicate();
+        chroma.position(1);
+        vPlane = chroma.slice();
+
+        ImagePreprocessor floatPreprocessor = new ImagePreprocessor(224, 224);
+        ImagePreprocessor quantizedPreprocessor = ImagePreprocessor.quantized(224, 224, false, 1 / 255.0f, 0);
+        floatConverter = new YuvToTensorConverter(floatPreprocessor);
+        quantizedConverter = new YuvToTensorConverter(quantizedPreprocessor);
+        floatInput = floatPreprocessor.newInputBuffer();
+        quantizedInput = quantizedPreprocessor.newInputBuffer();
+    }
+
+    @Benchmark
+    public ByteBuffer yuvToFloatTensor() {
+        floatConverter.convert(yPlane, uPlane, vPlane, width, height, width, width, 2, 90, floatInput);
+        return floatInput;
+    }
+
+    @Benchmark
+    public ByteBuffer yuvToQuantizedTensor() {
+        quantizedConverter.convert(yPlane, uPlane, vPlane, width, height, width, width, 2, 90, quantizedInput);
+        return quantizedInput;
+    }
+}
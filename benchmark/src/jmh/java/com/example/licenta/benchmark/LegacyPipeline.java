@@ -0,0 +1,50 @@
+package com.example.licenta.benchmark;
+
+import java.util.Map;
+
+// The original Java-side per-image work, kept as a baseline: normalizing into a float[], the
+// reshaping loop into float[1][224][224][3] and the arg-max over a fresh float[1][5] with a
+// boxed label lookup. Bitmap.createScaledBitmap is native Android code and is not reproduced;
+// the legacy path starts from pixels that are already 224x224.
+final class LegacyPipeline {
+    static final int IMG_SIZE = 224;
+
+    private LegacyPipeline() {
+    }
+
+    static float[] preprocessImage(int[] pixels) {
+        float[] input = new float[IMG_SIZE * IMG_SIZE * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            input[i * 3] = ((pixel >> 16) & 0xFF) / 255.0f; // Red
+            input[i * 3 + 1] = ((pixel >> 8) & 0xFF) / 255.0f; // Green
+            input[i * 3 + 2] = (pixel & 0xFF) / 255.0f; // Blue
+        }
+        return input;
+    }
+
+    static float[][][][] reshape(float[] input) {
+        float[][][][] inputTensor = new float[1][IMG_SIZE][IMG_SIZE][3];
+        for (int i = 0; i < IMG_SIZE; i++) {
+            for (int j = 0; j < IMG_SIZE; j++) {
+                inputTensor[0][i][j][0] = input[(i * IMG_SIZE + j) * 3];
+                inputTensor[0][i][j][1] = input[(i * IMG_SIZE + j) * 3 + 1];
+                inputTensor[0][i][j][2] = input[(i * IMG_SIZE + j) * 3 + 2];
+            }
+        }
+        return inputTensor;
+    }
+
+    // Stands in for interpreter.run(inputTensor, output) followed by the arg-max
+    static String argMax(float[] modelOutput, Map<Integer, String> labels) {
+        float[][] output = new float[1][modelOutput.length];
+        System.arraycopy(modelOutput, 0, output[0], 0, modelOutput.length);
+        int maxIndex = 0;
+        for (int i = 1; i < output[0].length; i++) {
+            if (output[0][i] > output[0][maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        return labels.get(maxIndex);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.licenta.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+// Baseline for PreprocessBenchmark: the original per-image work from 224x224 pixels on
+@State(Scope.Thread)
+public class LegacyPreprocessBenchmark {
+    private int[] modelPixels;
+    private ByteBuffer floatInput;
+    private FloatBuffer floatView;
+
+    @Setup
+    public void setUp() {
+        modelPixels = PreprocessBenchmark.randomPixels(LegacyPipeline.IMG_SIZE * LegacyPipeline.IMG_SIZE, 2);
+        floatInput = PreprocessBenchmark.direct(LegacyPipeline.IMG_SIZE * LegacyPipeline.IMG_SIZE * 3 * 4);
+        floatView = floatInput.asFloatBuffer();
+    }
+
+    // Original path after createScaledBitmap: float[] normalization, then the reshaping loop
+    @Benchmark
+    public float[][][][] normalizeAndReshape() {
+        return LegacyPipeline.reshape(LegacyPipeline.preprocessImage(modelPixels));
+    }
+
+    // The float[] adapter kept in TFLiteModel.predict(float[]): copy into the reused buffer
+    @Benchmark
+    public ByteBuffer floatsIntoBuffer() {
+        float[] input = LegacyPipeline.preprocessImage(modelPixels);
+        floatView.rewind();
+        floatView.put(input);
+        return floatInput;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.licenta.benchmark;
+
+import com.example.licenta.utils.PredictionResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Turning the model's scores into a result: the original arg-max over a float[1][n] with a
+ * boxed HashMap label lookup, against PredictionResult with its dense label table, with and
+ * without ranking the top 3 into a reused array.
+ */
+@State(Scope.Thread)
+public class PostprocessBenchmark {
+    @Param({"5", "100"})
+    public int numClasses;
+
+    private float[] scores;
+    private Map<Integer, String> labelMap;
+    private String[] labels;
+    private final int[] top = new int[3];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(4);
+        scores = new float[numClasses];
+        labelMap = new HashMap<>();
+        labels = new String[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            scores[i] = random.nextFloat();
+            labels[i] = "class " + i;
+            labelMap.put(i, labels[i]);
+        }
+    }
+
+    @Benchmark
+    public String legacyArgMax() {
+        return LegacyPipeline.argMax(scores, labelMap);
+    }
+
+    // TFLiteModel.toResult copies the scores out of the shared output buffer
+    @Benchmark
+    public PredictionResult predictionResult() {
+        float[] copy = new float[numClasses];
+        System.arraycopy(scores, 0, copy, 0, numClasses);
+        return new PredictionResult(copy, labels, 0);
+    }
+
+    @Benchmark
+    public void predictionResultTop3(Blackhole blackhole) {
+        float[] copy = new float[numClasses];
+        System.arraycopy(scores, 0, copy, 0, numClasses);
+        PredictionResult result = new PredictionResult(copy, labels, 0);
+        blackhole.consume(result.topK(3, top));
+        blackhole.consume(top);
+    }
+}
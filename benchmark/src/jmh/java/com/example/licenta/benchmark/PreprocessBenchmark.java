@@ -0,0 +1,77 @@
+package com.example.licenta.benchmark;
+
+import com.example.licenta.utils.ContentHasher;
+import com.example.licenta.utils.ImagePreprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Turning ARGB pixels into a 224x224 model input with the fused resize and normalize pass of
+ * {@link ImagePreprocessor}, from gallery-sized and camera-sized sources. The content hash is
+ * what a prediction cache hit costs instead. {@link LegacyPreprocessBenchmark} is the baseline.
+ */
+@State(Scope.Thread)
+public class PreprocessBenchmark {
+    @Param({"224x224", "640x480", "1280x720"})
+    public String source;
+
+    private int srcWidth;
+    private int srcHeight;
+    private int[] pixels;
+    private ImagePreprocessor floatPreprocessor;
+    private ImagePreprocessor quantizedPreprocessor;
+    private ByteBuffer floatInput;
+    private ByteBuffer quantizedInput;
+
+    @Setup
+    public void setUp() {
+        String[] size = source.split("x");
+        srcWidth = Integer.parseInt(size[0]);
+        srcHeight = Integer.parseInt(size[1]);
+        pixels = randomPixels(srcWidth * srcHeight, 1);
+
+        floatPreprocessor = new ImagePreprocessor(LegacyPipeline.IMG_SIZE, LegacyPipeline.IMG_SIZE);
+        quantizedPreprocessor = ImagePreprocessor.quantized(LegacyPipeline.IMG_SIZE, LegacyPipeline.IMG_SIZE,
+                false, 1 / 255.0f, 0);
+        floatInput = floatPreprocessor.newInputBuffer();
+        quantizedInput = quantizedPreprocessor.newInputBuffer();
+    }
+
+    @Benchmark
+    public ByteBuffer fusedFloat() {
+        floatPreprocessor.preprocess(pixels, srcWidth, srcHeight, floatInput);
+        return floatInput;
+    }
+
+    @Benchmark
+    public ByteBuffer fusedQuantized() {
+        quantizedPreprocessor.preprocess(pixels, srcWidth, srcHeight, quantizedInput);
+        return quantizedInput;
+    }
+
+    @Benchmark
+    public String contentHash() {
+        return new ContentHasher().update(srcWidth).update(srcHeight).update(pixels, 0, pixels.length).digest();
+    }
+
+    static int[] randomPixels(int count, long seed) {
+        Random random = new Random(seed);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return result;
+    }
+
+    static ByteBuffer direct(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
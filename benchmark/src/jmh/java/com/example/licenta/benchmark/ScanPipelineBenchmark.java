@@ -0,0 +1,140 @@
+package com.example.licenta.benchmark;
+
+import com.example.licenta.utils.BatchScanPipeline;
+import com.example.licenta.utils.Classifier;
+import com.example.licenta.utils.ContentHasher;
+import com.example.licenta.utils.FakeClassifier;
+import com.example.licenta.utils.ImagePreprocessor;
+import com.example.licenta.utils.InterpreterPool;
+import com.example.licenta.utils.PredictionCache;
+import com.example.licenta.utils.PredictionResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Images per second through BatchScanPipeline with a FakeClassifier that costs 4 ms per run
+ * plus 0.5 ms per image, so the numbers reflect batching, stage overlap and caching rather
+ * than model speed. With the cache warmed up every image is answered after decoding. With
+ * more than one inference thread the batches run on an InterpreterPool of that many fakes.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScanPipelineBenchmark {
+    private static final int IMAGES = 128;
+    private static final int SOURCE_SIZE = 320;
+    private static final String[] LABELS = {"CBB", "CBSD", "CGM", "CMD", "Healthy"};
+
+    @Param({"1", "8"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"1", "4"})
+    public int inferenceThreads;
+
+    private Classifier classifier;
+    private List<Integer> items;
+    private PredictionCache cache;
+    private File cacheDir;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<FakeClassifier> members = new ArrayList<>();
+        for (int i = 0; i < inferenceThreads; i++) {
+            members.add(new FakeClassifier(224, 224, LABELS, false, 4_000_000L, 500_000L));
+        }
+        classifier = inferenceThreads == 1 ? members.get(0) : new InterpreterPool(members);
+        items = new ArrayList<>();
+        for (int i = 0; i < IMAGES; i++) {
+            items.add(i);
+        }
+        if (cached) {
+            cacheDir = Files.createTempDirectory("scan-cache").toFile();
+            cache = new PredictionCache(cacheDir, classifier.getModelVersion(), LABELS.length, IMAGES, 1 << 20);
+            scan();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (cache != null) {
+            cache.close();
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            cacheDir.delete();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMAGES)
+    public void scan() throws InterruptedException {
+        final ImagePreprocessor preprocessor = classifier.newPreprocessor();
+        final CountDownLatch finished = new CountDownLatch(1);
+        BatchScanPipeline<Integer, int[]> pipeline = new BatchScanPipeline<>(classifier,
+                new BatchScanPipeline.Decoder<Integer, int[]>() {
+                    @Override
+                    public int[] decode(Integer id) {
+                        // Stands in for a downsampled JPEG decode
+                        return PreprocessBenchmark.randomPixels(SOURCE_SIZE * SOURCE_SIZE, id);
+                    }
+                },
+                new BatchScanPipeline.Preprocessor<int[]>() {
+                    @Override
+                    public void preprocess(int[] image, ByteBuffer batch, int imageIndex) {
+                        preprocessor.preprocess(image, SOURCE_SIZE, SOURCE_SIZE, batch, imageIndex);
+                    }
+                },
+                new BatchScanPipeline.Listener<Integer>() {
+                    @Override
+                    public void onResult(Integer item, PredictionResult result) {
+                    }
+
+                    @Override
+                    public void onError(Integer item, Exception error) {
+                        throw new IllegalStateException(error);
+                    }
+
+                    @Override
+                    public void onProgress(int processed, int failed, int total, float imagesPerSecond) {
+                    }
+
+                    @Override
+                    public void onFinished(boolean cancelled) {
+                        finished.countDown();
+                    }
+                },
+                batchSize, 2);
+        pipeline.setInferenceThreads(inferenceThreads);
+        if (cache != null) {
+            pipeline.setCache(cache, new BatchScanPipeline.Hasher<int[]>() {
+                @Override
+                public String hash(int[] image) {
+                    return new ContentHasher().update(image, 0, image.length).digest();
+                }
+            });
+        }
+        pipeline.start(items.iterator(), items.size());
+        finished.await();
+    }
+}